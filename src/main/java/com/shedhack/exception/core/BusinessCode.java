@@ -1,5 +1,7 @@
 package com.shedhack.exception.core;
 
+import java.util.Locale;
+
 /**
  * Business Codes interface, provides clients with meaningful codes + descriptions.
  *
@@ -19,4 +21,13 @@ public interface BusinessCode {
      */
     String getDescription();
 
+    /**
+     * Description in the given locale, see {@link BusinessCodeDescriptions}.
+     * @param locale locale, null for the default description.
+     * @return String description.
+     */
+    default String getDescription(Locale locale) {
+        return BusinessCodeDescriptions.describe(this, locale);
+    }
+
 }
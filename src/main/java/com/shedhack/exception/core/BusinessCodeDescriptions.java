@@ -0,0 +1,166 @@
+package com.shedhack.exception.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * <p>
+ * Localized descriptions of {@link BusinessCode}s, see {@link BusinessCode#getDescription(Locale)}.
+ *
+ * Descriptions are read from the resource bundle named after the class of the code (e.g. the properties file
+ * <code>com/acme/AccountCodes_fr.properties</code> for <code>com.acme.AccountCodes</code>), keyed by
+ * {@link BusinessCode#getCode()}. The usual bundle fallback applies (<code>fr_CA</code>, <code>fr</code>, then the
+ * base bundle) but not the JVM's default locale; codes without a localized description use
+ * {@link BusinessCode#getDescription()}.
+ *
+ * Each bundle is loaded once per class and locale into a table, for enums an array indexed by ordinal, so the
+ * lookup on the hot path is a map read and an array read without locking.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public final class BusinessCodeDescriptions {
+
+    // tables per locale kept for each class of code, other locales are resolved every time
+    private static final int MAX_LOCALES = 64;
+
+    private static final ResourceBundle.Control CONTROL = ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES);
+
+    private static volatile ClassValue<Table> tables = newTables();
+
+    private BusinessCodeDescriptions() {
+    }
+
+    /**
+     * @return description of the code in the locale, its default description if there isn't one.
+     */
+    public static String describe(BusinessCode code, Locale locale) {
+
+        if(locale == null) {
+            return code.getDescription();
+        }
+
+        if(code instanceof Enum) {
+            Enum<?> constant = (Enum<?>) code;
+            String[] descriptions = tables.get(constant.getDeclaringClass()).enumDescriptions(locale);
+            return descriptions[constant.ordinal()];
+        }
+
+        String description = tables.get(code.getClass()).descriptions(locale).get(code.getCode());
+        return description != null ? description : code.getDescription();
+    }
+
+    /**
+     * Drops the loaded tables, e.g. after the bundles have changed. Bundles which the {@link ResourceBundle} cache
+     * holds for other class loaders than this library's have to be cleared by the application.
+     */
+    public static void clear() {
+        ResourceBundle.clearCache(BusinessCodeDescriptions.class.getClassLoader());
+        tables = newTables();
+    }
+
+    private static ClassValue<Table> newTables() {
+        return new ClassValue<Table>() {
+            @Override
+            protected Table computeValue(Class<?> type) {
+                return new Table(type);
+            }
+        };
+    }
+
+    /**
+     * Descriptions of one class of codes, by locale. Copy on write.
+     */
+    private static final class Table {
+
+        private final Class<?> type;
+
+        private volatile Map<Locale, String[]> enums = Collections.emptyMap();
+
+        private volatile Map<Locale, Map<String, String>> others = Collections.emptyMap();
+
+        Table(Class<?> type) {
+            this.type = type;
+        }
+
+        String[] enumDescriptions(Locale locale) {
+
+            String[] descriptions = enums.get(locale);
+
+            if(descriptions == null) {
+
+                Map<String, String> bundle = load(locale);
+                Object[] constants = type.getEnumConstants();
+                descriptions = new String[constants.length];
+
+                for(int i = 0; i < constants.length; i++) {
+                    BusinessCode code = (BusinessCode) constants[i];
+                    String description = bundle.get(code.getCode());
+                    descriptions[i] = description != null ? description : code.getDescription();
+                }
+
+                synchronized (this) {
+                    if(enums.size() < MAX_LOCALES && !enums.containsKey(locale)) {
+                        Map<Locale, String[]> copy = new HashMap<Locale, String[]>(enums);
+                        copy.put(locale, descriptions);
+                        enums = copy;
+                    }
+                }
+            }
+
+            return descriptions;
+        }
+
+        Map<String, String> descriptions(Locale locale) {
+
+            Map<String, String> descriptions = others.get(locale);
+
+            if(descriptions == null) {
+
+                descriptions = load(locale);
+
+                synchronized (this) {
+                    if(others.size() < MAX_LOCALES && !others.containsKey(locale)) {
+                        Map<Locale, Map<String, String>> copy = new HashMap<Locale, Map<String, String>>(others);
+                        copy.put(locale, descriptions);
+                        others = copy;
+                    }
+                }
+            }
+
+            return descriptions;
+        }
+
+        /**
+         * @return all the descriptions in the bundle chain for the locale, empty if there isn't a bundle.
+         */
+        private Map<String, String> load(Locale locale) {
+
+            ClassLoader loader = type.getClassLoader() != null ? type.getClassLoader() : ClassLoader.getSystemClassLoader();
+            ResourceBundle bundle;
+
+            try {
+                bundle = ResourceBundle.getBundle(type.getName(), locale, loader, CONTROL);
+            }
+            catch (MissingResourceException e) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, String> descriptions = new HashMap<String, String>();
+
+            for(String key : bundle.keySet()) {
+                Object value = bundle.getObject(key);
+
+                if(value instanceof String) {
+                    descriptions.put(key, (String) value);
+                }
+            }
+
+            return descriptions;
+        }
+    }
+}
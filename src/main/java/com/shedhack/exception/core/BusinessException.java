@@ -22,19 +22,36 @@ public class BusinessException extends RuntimeException {
 
         BusinessException exception;
 
+        // JFR event, null unless it is being recorded
+        private Object event = ExceptionEvents.beginBusinessException();
+
         public Builder(String message) {
             exception = new BusinessException(message);
             generateId();
+            withTraceContext();
         }
 
         public Builder(Exception ex) {
             exception = new BusinessException(ex.getMessage(), ex);
             generateId();
+            withTraceContext();
         }
 
         public Builder(String message, Exception ex) {
             exception = new BusinessException(message, ex);
             generateId();
+            withTraceContext();
+        }
+
+        // trace and span Ids of the current request, if any
+        private void withTraceContext() {
+
+            TraceContext context = TraceContext.current();
+
+            if(context != null) {
+                exception.traceId = context.getTraceId();
+                exception.spanId = context.getSpanId();
+            }
         }
 
         public Builder generateId() {
@@ -45,6 +62,7 @@ public class BusinessException extends RuntimeException {
         public Builder withExceptionId(String id) {
             if(!Utils.isEmptyOrNull(id)) {
                 exception.exceptionId = id;
+                exception.chain = null;
             }
             return this;
         }
@@ -56,11 +74,26 @@ public class BusinessException extends RuntimeException {
 
         public Builder withParam(String key, Object value) {
             exception.params.put(key, value);
+            exception.renderedMessage = null;
+            exception.chain = null;
             return this;
         }
 
         public Builder withParams(Map<String, Object> params) {
             exception.params = params;
+            exception.renderedMessage = null;
+            exception.chain = null;
+            return this;
+        }
+
+        /**
+         * Message template such as <code>"User {user} not found"</code>, placeholders are bound to the params by name.
+         * The message is only rendered (and then cached) when {@link BusinessException#getMessage()} is called.
+         */
+        public Builder withMessageTemplate(String template) {
+            exception.messageTemplate = template == null ? null : MessageTemplate.compile(template);
+            exception.renderedMessage = null;
+            exception.chain = null;
             return this;
         }
 
@@ -84,7 +117,28 @@ public class BusinessException extends RuntimeException {
             return this;
         }
 
+        public Builder withHttpCode(Integer httpCode) {
+            exception.httpCode = httpCode;
+            return this;
+        }
+
+        /**
+         * Builds the exception, if no HTTP code was given it is taken from the {@link ExceptionClassifier}
+         * (business codes, then exception class).
+         */
         public BusinessException build() {
+
+            if(exception.httpCode == null) {
+
+                ExceptionClassification classification = ExceptionClassifier.getDefault().classifyException(exception);
+
+                if(classification != null && classification.getHttpStatusCode() > 0) {
+                    exception.httpCode = classification.getHttpStatusCode();
+                }
+            }
+
+            ExceptionEvents.commitBusinessException(event, exception);
+            event = null;
             return exception;
         }
     }
@@ -105,6 +159,14 @@ public class BusinessException extends RuntimeException {
         return new Builder(message);
     }
 
+    public static Builder templated(String template) {
+        return new Builder((String) null).withMessageTemplate(template);
+    }
+
+    public static Builder templated(String template, Exception ex) {
+        return new Builder(null, ex).withMessageTemplate(template);
+    }
+
     // ----------------
     // Class properties
     // ----------------
@@ -117,13 +179,74 @@ public class BusinessException extends RuntimeException {
 
     private Integer httpCode;
 
+    private MessageTemplate messageTemplate;
+
+    // rendered lazily from the template, racy but strings are immutable so the worst case is rendering twice
+    private String renderedMessage;
+
+    private final boolean frozen;
+
+    // memoized entries of this exception in its chain, see ExceptionChains, reset when the Id or message changes
+    transient volatile ExceptionChainModel[] chain;
+
 
     public BusinessException(String message) {
         super(message);
+        this.frozen = false;
     }
 
     public BusinessException(String message, Exception ex) {
         super(message, ex);
+        this.frozen = false;
+    }
+
+    /**
+     * Creates a frozen, stackless exception for the given code. Used by {@link FlyweightBusinessExceptions}
+     * so that a single instance can be shared by every thread which throws it.
+     * No exception Id is set as the instance is not tied to a single occurrence.
+     */
+    BusinessException(BusinessCode code) {
+        super(code.getDescription(), null, false, false);
+        this.params = Collections.emptyMap();
+        this.businessCodes = Collections.singletonList(code);
+        this.frozen = true;
+    }
+
+    /**
+     * @return true if this is a shared flyweight instance, such instances cannot be modified.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Returns the message, rendering the message template (if one was set) on first use.
+     */
+    @Override
+    public String getMessage() {
+
+        if(messageTemplate == null) {
+            return super.getMessage();
+        }
+
+        String message = renderedMessage;
+
+        if(message == null) {
+            message = messageTemplate.render(params);
+            renderedMessage = message;
+        }
+
+        return message;
+    }
+
+    public MessageTemplate getMessageTemplate() {
+        return messageTemplate;
+    }
+
+    private void checkNotFrozen() {
+        if(frozen) {
+            throw new UnsupportedOperationException("Flyweight BusinessException instances cannot be modified.");
+        }
     }
 
     public String getExceptionId() {
@@ -131,7 +254,9 @@ public class BusinessException extends RuntimeException {
     }
 
     public void setExceptionId(String exceptionId) {
+        checkNotFrozen();
         this.exceptionId = exceptionId;
+        this.chain = null;
     }
 
     public String getCorrelationId() {
@@ -139,6 +264,7 @@ public class BusinessException extends RuntimeException {
     }
 
     public void setCorrelationId(String correlationId) {
+        checkNotFrozen();
         this.correlationId = correlationId;
     }
 
@@ -147,7 +273,10 @@ public class BusinessException extends RuntimeException {
     }
 
     public void setParams(Map<String, Object> params) {
+        checkNotFrozen();
         this.params = params;
+        this.renderedMessage = null;
+        this.chain = null;
     }
 
     public List<BusinessCode> getBusinessCodes() {
@@ -155,6 +284,7 @@ public class BusinessException extends RuntimeException {
     }
 
     public void setBusinessCodes(List<BusinessCode> businessCodes) {
+        checkNotFrozen();
         this.businessCodes = businessCodes;
     }
 
@@ -163,6 +293,7 @@ public class BusinessException extends RuntimeException {
     }
 
     public void setHttpCode(Integer httpCode) {
+        checkNotFrozen();
         this.httpCode = httpCode;
     }
 
@@ -171,6 +302,7 @@ public class BusinessException extends RuntimeException {
     }
 
     public void setSpanId(String spanId) {
+        checkNotFrozen();
         this.spanId = spanId;
     }
 
@@ -179,6 +311,7 @@ public class BusinessException extends RuntimeException {
     }
 
     public void setTraceId(String traceId) {
+        checkNotFrozen();
         this.traceId = traceId;
     }
 
@@ -0,0 +1,37 @@
+package com.shedhack.exception.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event emitted when a {@link BusinessException} is built, the duration covers the use of the builder.
+ *
+ * @author imamchishty
+ */
+@Name("com.shedhack.exception.BusinessException")
+@Label("Business Exception")
+@Category("Exception Core")
+@Description("BusinessException built")
+final class BusinessExceptionEvent extends jdk.jfr.Event {
+
+    @Label("Exception Id")
+    String exceptionId;
+
+    @Label("Correlation Id")
+    String correlationId;
+
+    @Label("Business Codes")
+    String businessCodes;
+
+    @Label("Trace Id")
+    String traceId;
+
+    @Label("Span Id")
+    String spanId;
+
+    @Label("Chain Depth")
+    @Description("Number of exceptions in the cause chain, including this one")
+    int chainDepth;
+}
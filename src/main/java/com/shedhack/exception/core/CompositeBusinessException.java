@@ -0,0 +1,295 @@
+package com.shedhack.exception.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Business exception which aggregates the failures of parallel sub tasks (fork-join, virtual threads etc).
+ *
+ * Failures are collected by the {@link Builder} from any number of threads without locking. Each failure is given
+ * a correlation Id (its exception Id, a UUID found in its message or a new one) which is returned to the caller so that
+ * it can be logged. The business codes of the failures are merged (duplicates removed) and their params added,
+ * where a key is used more than once the first value wins.
+ *
+ * {@link ExceptionModel.Builder} adds an {@link ExceptionChainModel} for every failure, carrying its correlation Id.
+ * The failures are also added as suppressed exceptions.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public class CompositeBusinessException extends BusinessException {
+
+    // ----------------------------------
+    // Static inner class for the builder
+    // ----------------------------------
+
+    /**
+     * Thread safe, lock free builder.
+     */
+    public static class Builder {
+
+        private static final Object NULL = new Object();
+
+        private final String message;
+
+        private final AtomicReference<Node> failures = new AtomicReference<Node>();
+
+        private final ConcurrentMap<String, Object> params = new ConcurrentHashMap<String, Object>();
+
+        private final ConcurrentMap<BusinessCode, Boolean> seenCodes = new ConcurrentHashMap<BusinessCode, Boolean>();
+
+        private final Queue<BusinessCode> codes = new ConcurrentLinkedQueue<BusinessCode>();
+
+        private volatile String exceptionId, correlationId, traceId, spanId;
+
+        private volatile Integer httpCode;
+
+        public Builder(String message) {
+
+            this.message = message;
+
+            TraceContext context = TraceContext.current();
+
+            if(context != null) {
+                this.traceId = context.getTraceId();
+                this.spanId = context.getSpanId();
+            }
+        }
+
+        /**
+         * Adds a failure, can be called from any thread.
+         * @param failure failure of a sub task.
+         * @return correlation Id of the failure.
+         */
+        public String add(Throwable failure) {
+
+            if(failure == null) {
+                throw new IllegalArgumentException("Failure cannot be null.");
+            }
+
+            String id = null;
+
+            if(failure instanceof BusinessException) {
+
+                BusinessException exception = (BusinessException) failure;
+                id = exception.getExceptionId();
+
+                if(!Utils.isCollectionNullOrEmpty(exception.getBusinessCodes())) {
+                    for(BusinessCode code : exception.getBusinessCodes()) {
+                        withBusinessCode(code);
+                    }
+                }
+
+                if(exception.getParams() != null) {
+                    for(Map.Entry<String, Object> param : exception.getParams().entrySet()) {
+                        params.putIfAbsent(param.getKey(), param.getValue() == null ? NULL : param.getValue());
+                    }
+                }
+            }
+            else {
+                id = ExceptionModel.Builder.findCorrelation(failure.getMessage());
+            }
+
+            if(Utils.isEmptyOrNull(id)) {
+                id = UUID.randomUUID().toString();
+            }
+
+            Node head;
+            Node node;
+
+            do {
+                head = failures.get();
+                node = new Node(new Failure(id, failure), head);
+            }
+            while (!failures.compareAndSet(head, node));
+
+            return id;
+        }
+
+        public Builder withBusinessCode(BusinessCode code) {
+
+            if(seenCodes.putIfAbsent(code, Boolean.TRUE) == null) {
+                codes.add(code);
+            }
+
+            return this;
+        }
+
+        public Builder withParam(String key, Object value) {
+            params.put(key, value == null ? NULL : value);
+            return this;
+        }
+
+        public Builder withExceptionId(String id) {
+            this.exceptionId = id;
+            return this;
+        }
+
+        public Builder withCorrelationId(String correlationId) {
+            this.correlationId = correlationId;
+            return this;
+        }
+
+        public Builder withTraceId(String traceId) {
+            this.traceId = traceId;
+            return this;
+        }
+
+        public Builder withSpanId(String spanId) {
+            this.spanId = spanId;
+            return this;
+        }
+
+        public Builder withHttpCode(Integer httpCode) {
+            this.httpCode = httpCode;
+            return this;
+        }
+
+        /**
+         * @return true if no failure has been added.
+         */
+        public boolean isEmpty() {
+            return failures.get() == null;
+        }
+
+        /**
+         * @return the number of failures added so far.
+         */
+        public int size() {
+            Node head = failures.get();
+            return head == null ? 0 : head.size;
+        }
+
+        /**
+         * Builds the exception from the failures added so far, failures are kept in the order they were added.
+         * If no HTTP code was given it is taken from the {@link ExceptionClassifier} (business codes, then exception
+         * class), as {@link BusinessException.Builder#build()} does.
+         */
+        public CompositeBusinessException build() {
+
+            List<Failure> list = new ArrayList<Failure>();
+
+            for(Node node = failures.get(); node != null; node = node.next) {
+                list.add(node.failure);
+            }
+
+            Collections.reverse(list);
+
+            Map<String, Object> merged = new HashMap<String, Object>();
+
+            for(Map.Entry<String, Object> param : params.entrySet()) {
+                merged.put(param.getKey(), param.getValue() == NULL ? null : param.getValue());
+            }
+
+            String text = message != null ? message : list.size() + " failure(s)";
+            CompositeBusinessException exception = new CompositeBusinessException(text, Collections.unmodifiableList(list));
+
+            exception.setExceptionId(Utils.isEmptyOrNull(exceptionId) ? UUID.randomUUID().toString() : exceptionId);
+            exception.setCorrelationId(correlationId);
+            exception.setTraceId(traceId);
+            exception.setSpanId(spanId);
+            exception.setParams(merged);
+            exception.setBusinessCodes(new ArrayList<BusinessCode>(codes));
+            exception.setHttpCode(httpCode);
+
+            if(httpCode == null) {
+
+                ExceptionClassification classification = ExceptionClassifier.getDefault().classifyException(exception);
+
+                if(classification != null && classification.getHttpStatusCode() > 0) {
+                    exception.setHttpCode(classification.getHttpStatusCode());
+                }
+            }
+
+            for(Failure failure : list) {
+                if(failure.getFailure() != exception) {
+                    exception.addSuppressed(failure.getFailure());
+                }
+            }
+
+            return exception;
+        }
+    }
+
+    /**
+     * Immutable stack node, keeps the size so that it can be read without walking the stack.
+     */
+    private static final class Node {
+
+        private final Failure failure;
+
+        private final Node next;
+
+        private final int size;
+
+        private Node(Failure failure, Node next) {
+            this.failure = failure;
+            this.next = next;
+            this.size = next == null ? 1 : next.size + 1;
+        }
+    }
+
+    /**
+     * Failure of a sub task together with its correlation Id.
+     */
+    public static final class Failure implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String correlationId;
+
+        private final Throwable failure;
+
+        Failure(String correlationId, Throwable failure) {
+            this.correlationId = correlationId;
+            this.failure = failure;
+        }
+
+        public String getCorrelationId() {
+            return correlationId;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+
+    // ----------------
+    // Static method
+    // ----------------
+
+    public static Builder composite(String message) {
+        return new Builder(message);
+    }
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Failure> failures;
+
+    public CompositeBusinessException(String message, List<Failure> failures) {
+        super(message);
+        this.failures = failures;
+    }
+
+    /**
+     * @return failures in the order they were added.
+     */
+    public List<Failure> getFailures() {
+        return failures;
+    }
+}
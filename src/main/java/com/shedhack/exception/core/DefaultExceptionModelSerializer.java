@@ -0,0 +1,321 @@
+package com.shedhack.exception.core;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Dependency free {@link ExceptionModelSerializer}, used when no other serializer is available.
+ *
+ * The output is the same as Gson's default configuration: members in field declaration order, nulls left out,
+ * HTML safe escaping and dates in the US default format. Params and context values are written as strings,
+ * numbers, booleans, enums (by name), dates, maps, collections and arrays; other objects are written field by field
+ * (sub class fields first) in the same way as Gson. Objects whose fields can't be accessed are written using
+ * <code>toString()</code>.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public class DefaultExceptionModelSerializer implements ExceptionModelSerializer {
+
+    private static final int MAX_DEPTH = 64;
+
+    // serializable fields of each class, null if the class can't be written field by field
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            return findFields(type);
+        }
+    };
+
+    @Override
+    public String serialize(ExceptionModel model) {
+
+        StringBuilder out = new StringBuilder(512);
+        out.append('{');
+
+        boolean first = true;
+        first = string(out, first, "traceId", model.getTraceId());
+        first = string(out, first, "spanId", model.getSpanId());
+        first = string(out, first, "exceptionId", model.getExceptionId());
+        first = string(out, first, "correlationId", model.getCorrelationId());
+        first = string(out, first, "httpStatusDescription", model.getHttpStatusDescription());
+        first = string(out, first, "path", model.getPath());
+        first = string(out, first, "sessionId", model.getSessionId());
+        first = string(out, first, "helpLink", model.getHelpLink());
+        first = string(out, first, "message", model.getMessage());
+        first = string(out, first, "exceptionClass", model.getExceptionClass());
+        first = string(out, first, "applicationName", model.getApplicationName());
+        first = string(out, first, "metadata", model.getMetadata());
+        first = string(out, first, "requestBody", model.getRequestBody());
+        first = name(out, first, "httpStatusCode");
+        out.append(model.getHttpStatusCode());
+        first = value(out, first, "retryable", model.getRetryable(), 0);
+        first = string(out, first, "severity", model.getSeverity());
+        first = value(out, first, "params", model.getParams(), 0);
+        first = value(out, first, "businessCodes", model.getBusinessCodes(), 0);
+        first = value(out, first, "context", model.getContext(), 0);
+
+        if(model.getExceptionChain() != null) {
+
+            name(out, first, "exceptionChain");
+            out.append('[');
+
+            for(int i = 0; i < model.getExceptionChain().size(); i++) {
+
+                ExceptionChainModel chain = model.getExceptionChain().get(i);
+                out.append(i == 0 ? "" : ",");
+
+                if(chain == null) {
+                    out.append("null");
+                    continue;
+                }
+
+                out.append('{');
+                boolean firstMember = string(out, true, "correlationId", chain.getCorrelationId());
+                string(out, firstMember, "message", chain.getMessage());
+                out.append('}');
+            }
+
+            out.append(']');
+            first = false;
+        }
+
+        if(model.getDateTime() != null) {
+            name(out, first, "dateTime");
+            JsonStrings.appendQuoted(out, JsonStrings.formatDate(model.getDateTime()));
+        }
+
+        return out.append('}').toString();
+    }
+
+    // ----------------
+    // Members
+    // ----------------
+
+    private static boolean name(StringBuilder out, boolean first, String name) {
+
+        if(!first) {
+            out.append(',');
+        }
+
+        JsonStrings.appendQuoted(out, name);
+        out.append(':');
+        return false;
+    }
+
+    private static boolean string(StringBuilder out, boolean first, String name, String value) {
+
+        if(value == null) {
+            return first;
+        }
+
+        name(out, first, name);
+        JsonStrings.appendQuoted(out, value);
+        return false;
+    }
+
+    private static boolean value(StringBuilder out, boolean first, String name, Object value, int depth) {
+
+        if(isNull(value)) {
+            return first;
+        }
+
+        name(out, first, name);
+        write(out, value, depth);
+        return false;
+    }
+
+    // ----------------
+    // Values
+    // ----------------
+
+    private static void write(StringBuilder out, Object value, int depth) {
+
+        if(depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Value nested too deeply, it may contain a cycle: " + value.getClass().getName());
+        }
+
+        if(isNull(value)) {
+            out.append("null");
+        }
+        else if(value instanceof String || value instanceof Character || value instanceof StringBuilder || value instanceof StringBuffer
+                || value instanceof UUID || value instanceof Locale) {
+            JsonStrings.appendQuoted(out, value.toString());
+        }
+        else if(value instanceof Boolean || value instanceof AtomicBoolean) {
+            out.append(value.toString());
+        }
+        else if(value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+
+            if(Double.isNaN(number) || Double.isInfinite(number)) {
+                throw new IllegalArgumentException(number + " is not a valid double value as per JSON specification.");
+            }
+
+            out.append(value.toString());
+        }
+        else if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                || value instanceof BigDecimal || value instanceof BigInteger || value instanceof AtomicInteger || value instanceof AtomicLong) {
+            out.append(value.toString());
+        }
+        else if(value instanceof Enum) {
+            JsonStrings.appendQuoted(out, ((Enum<?>) value).name());
+        }
+        else if(value instanceof Date) {
+            JsonStrings.appendQuoted(out, JsonStrings.formatDate((Date) value));
+        }
+        else if(value instanceof URI) {
+            JsonStrings.appendQuoted(out, ((URI) value).toASCIIString());
+        }
+        else if(value instanceof URL) {
+            JsonStrings.appendQuoted(out, ((URL) value).toExternalForm());
+        }
+        else if(value instanceof Currency) {
+            JsonStrings.appendQuoted(out, ((Currency) value).getCurrencyCode());
+        }
+        else if(value instanceof Calendar) {
+            writeCalendar(out, (Calendar) value);
+        }
+        else if(value instanceof Map) {
+            writeMap(out, (Map<?, ?>) value, depth);
+        }
+        else if(value instanceof Collection) {
+            writeCollection(out, (Collection<?>) value, depth);
+        }
+        else if(value.getClass().isArray()) {
+            writeArray(out, value, depth);
+        }
+        else {
+            writeObject(out, value, depth);
+        }
+    }
+
+    private static void writeMap(StringBuilder out, Map<?, ?> map, int depth) {
+
+        out.append('{');
+        boolean first = true;
+
+        for(Map.Entry<?, ?> entry : map.entrySet()) {
+            first = value(out, first, String.valueOf(entry.getKey()), entry.getValue(), depth + 1);
+        }
+
+        out.append('}');
+    }
+
+    private static void writeCollection(StringBuilder out, Collection<?> collection, int depth) {
+
+        out.append('[');
+        boolean first = true;
+
+        for(Object element : collection) {
+            out.append(first ? "" : ",");
+            write(out, element, depth + 1);
+            first = false;
+        }
+
+        out.append(']');
+    }
+
+    private static void writeArray(StringBuilder out, Object array, int depth) {
+
+        out.append('[');
+
+        for(int i = 0, length = Array.getLength(array); i < length; i++) {
+            out.append(i == 0 ? "" : ",");
+            write(out, Array.get(array, i), depth + 1);
+        }
+
+        out.append(']');
+    }
+
+    private static void writeCalendar(StringBuilder out, Calendar calendar) {
+        out.append("{\"year\":").append(calendar.get(Calendar.YEAR))
+                .append(",\"month\":").append(calendar.get(Calendar.MONTH))
+                .append(",\"dayOfMonth\":").append(calendar.get(Calendar.DAY_OF_MONTH))
+                .append(",\"hourOfDay\":").append(calendar.get(Calendar.HOUR_OF_DAY))
+                .append(",\"minute\":").append(calendar.get(Calendar.MINUTE))
+                .append(",\"second\":").append(calendar.get(Calendar.SECOND))
+                .append('}');
+    }
+
+    private static void writeObject(StringBuilder out, Object value, int depth) {
+
+        Field[] fields = FIELDS.get(value.getClass());
+
+        if(fields == null) {
+            JsonStrings.appendQuoted(out, value.toString());
+            return;
+        }
+
+        out.append('{');
+        boolean first = true;
+
+        for(Field field : fields) {
+            try {
+                first = value(out, first, field.getName(), field.get(value), depth + 1);
+            }
+            catch (IllegalAccessException e) {
+                throw new IllegalStateException("Unable to read field " + field, e);
+            }
+        }
+
+        out.append('}');
+    }
+
+    /**
+     * Gson doesn't serialize anonymous or local classes (other than enum constants), they are treated as null.
+     */
+    private static boolean isNull(Object value) {
+        return value == null || isExcluded(value.getClass());
+    }
+
+    private static boolean isExcluded(Class<?> type) {
+        return !Enum.class.isAssignableFrom(type) && (type.isAnonymousClass() || type.isLocalClass());
+    }
+
+    private static Field[] findFields(Class<?> type) {
+
+        List<Field> fields = new ArrayList<Field>();
+
+        try {
+            for(Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+
+                for(Field field : current.getDeclaredFields()) {
+
+                    int modifiers = field.getModifiers();
+
+                    if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic() || isExcluded(field.getType())) {
+                        continue;
+                    }
+
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            // e.g. fields of JDK classes which can't be made accessible
+            return null;
+        }
+
+        return fields.toArray(new Field[fields.size()]);
+    }
+}
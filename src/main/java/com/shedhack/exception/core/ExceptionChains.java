@@ -0,0 +1,152 @@
+package com.shedhack.exception.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>
+ * Memoized exception chains. The chain of a throwable is its own entries (one, plus one per failure of a
+ * {@link CompositeBusinessException}) followed by the chain of its cause. Only the own entries of each throwable are
+ * cached, as working them out is the expensive part (rendering the message, looking for a correlation Id); the chain
+ * is joined from the causes every time, so a cause which changes after it was wrapped is still reported correctly.
+ *
+ * The entries are cached on {@link BusinessException} itself and, for other throwables, in a weak cache which doesn't
+ * keep them from being collected. The weak cache is split into stripes, by identity hash, so that threads reporting
+ * different failures rarely contend for the same lock.
+ *
+ * {@link ExceptionChainModel} is mutable, so the cached entries are never handed out: each model gets its own copies.
+ * </p>
+ *
+ * @author imamchishty
+ */
+final class ExceptionChains {
+
+    private static final ExceptionChainModel[] EMPTY = new ExceptionChainModel[0];
+
+    // power of two
+    private static final int STRIPES = 16;
+
+    private static final Stripe[] FOREIGN = new Stripe[STRIPES];
+
+    static {
+        for(int i = 0; i < FOREIGN.length; i++) {
+            FOREIGN[i] = new Stripe();
+        }
+    }
+
+    private ExceptionChains() {
+    }
+
+    /**
+     * @return a new, modifiable, list containing copies of the chain entries of the throwable.
+     */
+    static List<ExceptionChainModel> find(Throwable throwable) {
+
+        ExceptionChainModel[] chain = chain(throwable);
+        List<ExceptionChainModel> copy = new ArrayList<ExceptionChainModel>(chain.length);
+
+        for(ExceptionChainModel entry : chain) {
+            copy.add(new ExceptionChainModel(entry.getCorrelationId(), entry.getMessage()));
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return the chain joined from the cached entries, which must not be modified or handed out.
+     */
+    static ExceptionChainModel[] chain(Throwable throwable) {
+
+        if(throwable == null) {
+            return EMPTY;
+        }
+
+        int size = 0;
+
+        for(Throwable current = throwable; current != null; current = current.getCause()) {
+            size += own(current).length;
+        }
+
+        ExceptionChainModel[] chain = new ExceptionChainModel[size];
+        int position = 0;
+
+        for(Throwable current = throwable; current != null; current = current.getCause()) {
+            ExceptionChainModel[] own = own(current);
+            System.arraycopy(own, 0, chain, position, own.length);
+            position += own.length;
+        }
+
+        return chain;
+    }
+
+    /**
+     * @return the entries of the throwable itself, from the cache if they are known.
+     */
+    private static ExceptionChainModel[] own(Throwable throwable) {
+
+        ExceptionChainModel[] own = cached(throwable);
+
+        if(own == null) {
+            own = create(throwable);
+            cache(throwable, own);
+        }
+
+        return own;
+    }
+
+    private static ExceptionChainModel[] create(Throwable throwable) {
+
+        List<CompositeBusinessException.Failure> failures = throwable instanceof CompositeBusinessException
+                ? ((CompositeBusinessException) throwable).getFailures() : Collections.<CompositeBusinessException.Failure>emptyList();
+
+        ExceptionChainModel[] own = new ExceptionChainModel[1 + failures.size()];
+
+        String correlationId = throwable instanceof BusinessException
+                ? ((BusinessException) throwable).getExceptionId() : ExceptionModel.Builder.findCorrelation(throwable.getMessage());
+
+        own[0] = new ExceptionChainModel(correlationId, throwable.getMessage());
+
+        for(int i = 0; i < failures.size(); i++) {
+            CompositeBusinessException.Failure failure = failures.get(i);
+            own[i + 1] = new ExceptionChainModel(failure.getCorrelationId(), failure.getFailure().getMessage());
+        }
+
+        return own;
+    }
+
+    private static ExceptionChainModel[] cached(Throwable throwable) {
+
+        if(throwable instanceof BusinessException) {
+            return ((BusinessException) throwable).chain;
+        }
+
+        return stripe(throwable).get(throwable);
+    }
+
+    private static void cache(Throwable throwable, ExceptionChainModel[] own) {
+
+        if(throwable instanceof BusinessException) {
+            ((BusinessException) throwable).chain = own;
+        }
+        else {
+            stripe(throwable).put(throwable, own);
+        }
+    }
+
+    private static Map<Throwable, ExceptionChainModel[]> stripe(Throwable throwable) {
+        int hash = System.identityHashCode(throwable);
+        return FOREIGN[(hash ^ (hash >>> 16)) & (STRIPES - 1)].entries;
+    }
+
+    /**
+     * Part of the weak cache. Throwable doesn't override equals/hashCode, so it is keyed by identity.
+     */
+    private static final class Stripe {
+
+        private final Map<Throwable, ExceptionChainModel[]> entries =
+                Collections.synchronizedMap(new WeakHashMap<Throwable, ExceptionChainModel[]>());
+    }
+}
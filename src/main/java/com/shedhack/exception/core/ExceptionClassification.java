@@ -0,0 +1,103 @@
+package com.shedhack.exception.core;
+
+/**
+ * HTTP status, retryability and severity of a failure, registered against exception classes
+ * and business codes in the {@link ExceptionClassifier}.
+ *
+ * @author imamchishty
+ */
+public final class ExceptionClassification {
+
+    private final int httpStatusCode;
+
+    private final String httpStatusDescription;
+
+    private final Boolean retryable;
+
+    private final Severity severity;
+
+    /**
+     * @param httpStatusCode http status code, 0 if the classification doesn't decide the status.
+     * @param httpStatusDescription http status description, may be null.
+     * @param retryable true if the failed operation can be retried, null if the classification doesn't decide it.
+     * @param severity severity, null if the classification doesn't decide it.
+     */
+    public ExceptionClassification(int httpStatusCode, String httpStatusDescription, Boolean retryable, Severity severity) {
+        this.httpStatusCode = httpStatusCode;
+        this.httpStatusDescription = httpStatusDescription;
+        this.retryable = retryable;
+        this.severity = severity;
+    }
+
+    public static ExceptionClassification of(int httpStatusCode, Boolean retryable, Severity severity) {
+        return new ExceptionClassification(httpStatusCode, null, retryable, severity);
+    }
+
+    public int getHttpStatusCode() {
+        return httpStatusCode;
+    }
+
+    public String getHttpStatusDescription() {
+        return httpStatusDescription;
+    }
+
+    /**
+     * @return true if the failed operation can be retried, null if the classification doesn't decide it.
+     */
+    public Boolean getRetryable() {
+        return retryable;
+    }
+
+    /**
+     * @return true only if the classification says the failed operation can be retried.
+     */
+    public boolean isRetryable() {
+        return Boolean.TRUE.equals(retryable);
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * @return copy with the http status code replaced.
+     */
+    public ExceptionClassification withHttpStatusCode(int code) {
+        return code == httpStatusCode ? this : new ExceptionClassification(code, null, retryable, severity);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ExceptionClassification that = (ExceptionClassification) o;
+
+        if (httpStatusCode != that.httpStatusCode) return false;
+        if (retryable != null ? !retryable.equals(that.retryable) : that.retryable != null) return false;
+        if (httpStatusDescription != null ? !httpStatusDescription.equals(that.httpStatusDescription) : that.httpStatusDescription != null)
+            return false;
+
+        return severity == that.severity;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = httpStatusCode;
+        result = 31 * result + (httpStatusDescription != null ? httpStatusDescription.hashCode() : 0);
+        result = 31 * result + (retryable != null ? retryable.hashCode() : 0);
+        result = 31 * result + (severity != null ? severity.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ExceptionClassification{" +
+                "httpStatusCode=" + httpStatusCode +
+                ", httpStatusDescription='" + httpStatusDescription + '\'' +
+                ", retryable=" + retryable +
+                ", severity=" + severity +
+                '}';
+    }
+}
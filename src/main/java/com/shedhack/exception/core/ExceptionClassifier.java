@@ -0,0 +1,186 @@
+package com.shedhack.exception.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Registry which maps exception classes and {@link BusinessCode}s to an {@link ExceptionClassification}
+ * (HTTP status, retryability and severity), so that clients and error handlers don't need <code>instanceof</code> ladders.
+ *
+ * Classes inherit the classification of their nearest registered super class. The result for each class is cached
+ * using a {@link ClassValue}, registering a new mapping simply starts a fresh cache, registration is expected
+ * to happen at start up.
+ *
+ * A chain is resolved in one pass from the outermost exception inwards, the first exception that can be classified wins:
+ * <ul>
+ *     <li>{@link BusinessException}: the first registered business code, then its class.</li>
+ *     <li>Other exceptions: their class.</li>
+ * </ul>
+ * An explicit HTTP code set on a {@link BusinessException} at or above that point overrides the status.
+ *
+ * {@link ExceptionModel.Builder} and {@link BusinessException.Builder} apply the classification of the default registry,
+ * which can be replaced with {@link #setDefault(ExceptionClassifier)} (e.g. one registry per application or test).
+ * </p>
+ *
+ * @author imamchishty
+ */
+public final class ExceptionClassifier {
+
+    private static final ExceptionClassification UNCLASSIFIED = new ExceptionClassification(0, null, null, null);
+
+    private static final int MAX_CHAIN_DEPTH = 64;
+
+    private static volatile ExceptionClassifier defaultClassifier = new ExceptionClassifier();
+
+    /**
+     * @return registry used by the builders.
+     */
+    public static ExceptionClassifier getDefault() {
+        return defaultClassifier;
+    }
+
+    /**
+     * @param classifier registry used by the builders, null for a new empty registry.
+     */
+    public static void setDefault(ExceptionClassifier classifier) {
+        defaultClassifier = classifier == null ? new ExceptionClassifier() : classifier;
+    }
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    // copy on write, reads are lock free
+    private volatile Map<Class<?>, ExceptionClassification> classes = new HashMap<Class<?>, ExceptionClassification>();
+
+    private volatile Map<BusinessCode, ExceptionClassification> codes = new HashMap<BusinessCode, ExceptionClassification>();
+
+    private volatile ClassValue<ExceptionClassification> cache = newCache(classes);
+
+    public synchronized ExceptionClassifier register(Class<? extends Throwable> type, ExceptionClassification classification) {
+
+        Map<Class<?>, ExceptionClassification> copy = new HashMap<Class<?>, ExceptionClassification>(classes);
+        copy.put(type, classification);
+
+        classes = copy;
+        cache = newCache(copy);
+        return this;
+    }
+
+    public synchronized ExceptionClassifier register(BusinessCode code, ExceptionClassification classification) {
+
+        Map<BusinessCode, ExceptionClassification> copy = new HashMap<BusinessCode, ExceptionClassification>(codes);
+        copy.put(code, classification);
+
+        codes = copy;
+        return this;
+    }
+
+    /**
+     * Removes all mappings.
+     */
+    public synchronized void clear() {
+        classes = new HashMap<Class<?>, ExceptionClassification>();
+        codes = new HashMap<BusinessCode, ExceptionClassification>();
+        cache = newCache(classes);
+    }
+
+    /**
+     * @return classification of the class (or nearest registered super class), null if there isn't one.
+     */
+    public ExceptionClassification classify(Class<? extends Throwable> type) {
+        ExceptionClassification classification = cache.get(type);
+        return classification == UNCLASSIFIED ? null : classification;
+    }
+
+    /**
+     * @return classification of the code, null if there isn't one.
+     */
+    public ExceptionClassification classify(BusinessCode code) {
+        return codes.get(code);
+    }
+
+    /**
+     * Resolves the whole cause chain, see class comments.
+     * @param throwable exception, may be null.
+     * @return classification, null if nothing in the chain could be classified.
+     */
+    public ExceptionClassification classify(Throwable throwable) {
+
+        Integer explicitStatus = null;
+
+        for(int depth = 0; throwable != null && depth < MAX_CHAIN_DEPTH; depth++) {
+
+            if(explicitStatus == null && throwable instanceof BusinessException) {
+                explicitStatus = ((BusinessException) throwable).getHttpCode();
+            }
+
+            ExceptionClassification classification = classifyException(throwable);
+
+            if(classification != null) {
+                return explicitStatus == null ? classification : classification.withHttpStatusCode(explicitStatus);
+            }
+
+            throwable = throwable.getCause();
+        }
+
+        // only the status is known, retryability and severity are left undecided
+        return explicitStatus == null ? null : new ExceptionClassification(explicitStatus, null, null, null);
+    }
+
+    /**
+     * Classifies just the exception using the registered mappings, ignoring its causes and any explicit HTTP code.
+     */
+    ExceptionClassification classifyException(Throwable throwable) {
+
+        ExceptionClassification classification = null;
+
+        if(throwable instanceof BusinessException) {
+            classification = classifyCodes((BusinessException) throwable);
+        }
+
+        return classification != null ? classification : classify(throwable.getClass());
+    }
+
+    private ExceptionClassification classifyCodes(BusinessException exception) {
+
+        Map<BusinessCode, ExceptionClassification> codes = this.codes;
+
+        if(codes.isEmpty() || Utils.isCollectionNullOrEmpty(exception.getBusinessCodes())) {
+            return null;
+        }
+
+        for(BusinessCode code : exception.getBusinessCodes()) {
+
+            ExceptionClassification classification = codes.get(code);
+
+            if(classification != null) {
+                return classification;
+            }
+        }
+
+        return null;
+    }
+
+    private static ClassValue<ExceptionClassification> newCache(final Map<Class<?>, ExceptionClassification> classes) {
+
+        return new ClassValue<ExceptionClassification>() {
+
+            @Override
+            protected ExceptionClassification computeValue(Class<?> type) {
+
+                for(Class<?> current = type; current != null; current = current.getSuperclass()) {
+
+                    ExceptionClassification classification = classes.get(current);
+
+                    if(classification != null) {
+                        return classification;
+                    }
+                }
+
+                return UNCLASSIFIED;
+            }
+        };
+    }
+}
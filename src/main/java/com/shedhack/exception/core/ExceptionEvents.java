@@ -0,0 +1,59 @@
+package com.shedhack.exception.core;
+
+/**
+ * Emits the Java Flight Recorder events of this library, see {@link JfrExceptionEvents}.
+ *
+ * JFR classes are only touched when <code>jdk.jfr</code> is present, so the library still runs on JVMs without it.
+ * Event classes are not touched until the flight recorder has been initialized (creating the first event is slow
+ * and would add to start up time). Begin methods return null when the event isn't enabled in any recording,
+ * in which case the matching commit methods return straight away.
+ *
+ * @author imamchishty
+ */
+final class ExceptionEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private ExceptionEvents() {
+    }
+
+    static Object beginBusinessException() {
+        return AVAILABLE && JfrExceptionEvents.isRecorderInitialized() ? JfrExceptionEvents.beginBusinessException() : null;
+    }
+
+    static void commitBusinessException(Object event, BusinessException exception) {
+        if(event != null) {
+            JfrExceptionEvents.commitBusinessException(event, exception);
+        }
+    }
+
+    static Object beginExceptionModel() {
+        return AVAILABLE && JfrExceptionEvents.isRecorderInitialized() ? JfrExceptionEvents.beginExceptionModel() : null;
+    }
+
+    static void commitExceptionModel(Object event, ExceptionModel model) {
+        if(event != null) {
+            JfrExceptionEvents.commitExceptionModel(event, model);
+        }
+    }
+
+    static Object beginSerialization() {
+        return AVAILABLE && JfrExceptionEvents.isRecorderInitialized() ? JfrExceptionEvents.beginSerialization() : null;
+    }
+
+    static void commitSerialization(Object event, ExceptionModel model, String json) {
+        if(event != null) {
+            JfrExceptionEvents.commitSerialization(event, model, json);
+        }
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ExceptionEvents.class.getClassLoader());
+            return true;
+        }
+        catch (Throwable e) {
+            return false;
+        }
+    }
+}
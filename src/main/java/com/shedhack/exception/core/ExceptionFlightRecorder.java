@@ -0,0 +1,465 @@
+package com.shedhack.exception.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Fixed size, off-heap ring buffer of the most recent exceptions.
+ *
+ * Each {@link ExceptionModel} recorded is written as a compact binary snapshot (see {@link FlightRecord}) into a slot
+ * of a direct {@link ByteBuffer}, or of a memory mapped file so that the history survives the process dying.
+ * The memory used is <code>slots * slotSize</code> bytes no matter how many exceptions are recorded, older records
+ * are overwritten and long strings are cut short to fit the slot.
+ *
+ * Writers don't lock: each claims a sequence number and a slot, and marks the slot as being written using its
+ * per-slot sequence number. If another writer still holds the slot (only possible when the buffer wraps around
+ * while a write is in progress) the record is dropped rather than waiting. Readers copy a slot and check that its
+ * sequence number didn't change while they were reading.
+ *
+ * Register the recorder with {@link ExceptionModelListeners} to record every model that is built.
+ * </p>
+ *
+ * Slot layout: sequence + 1 (long, 0 when empty), payload length (int), date/time (long), http status (int) and
+ * the strings, each as an unsigned short length (0xFFFF for null) followed by UTF-8 bytes.
+ *
+ * @author imamchishty
+ */
+public final class ExceptionFlightRecorder implements ExceptionModelListener {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x45584652, VERSION = 1, HEADER_SIZE = 16, SLOT_HEADER_SIZE = 12;
+
+    private static final int FIXED_SIZE = 12, STRINGS = 8, NULL_LENGTH = 0xFFFF, MIN_SLOT_SIZE = SLOT_HEADER_SIZE + FIXED_SIZE + 2 * STRINGS;
+
+    private static final int ZEROS_SIZE = 8192;
+
+    /**
+     * Recorder backed by a direct (off-heap) buffer.
+     * @param slots number of records kept.
+     * @param slotSize maximum size of each record in bytes.
+     */
+    public static ExceptionFlightRecorder offHeap(int slots, int slotSize) {
+        validate(slots, slotSize);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + slots * slotSize);
+        writeHeader(buffer, slots, slotSize);
+        return new ExceptionFlightRecorder(buffer, slots, slotSize);
+    }
+
+    /**
+     * Recorder backed by a memory mapped file. If the file already holds a recorder with the same geometry
+     * (for instance from before a restart) its records are kept, otherwise the file is reset.
+     * @param file file, created if needed.
+     * @param slots number of records kept.
+     * @param slotSize maximum size of each record in bytes.
+     */
+    public static ExceptionFlightRecorder mapped(File file, int slots, int slotSize) throws IOException {
+
+        validate(slots, slotSize);
+        long size = HEADER_SIZE + (long) slots * slotSize;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            boolean reuse = raf.length() == size;
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            if(!reuse || !hasHeader(buffer, slots, slotSize)) {
+                clear(buffer);
+                writeHeader(buffer, slots, slotSize);
+            }
+
+            return new ExceptionFlightRecorder(buffer, slots, slotSize);
+        }
+        finally {
+            // the mapping stays valid once the file is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads the records left in a file by {@link #mapped(File, int, int)}, e.g. after the process died.
+     * @param file recorder file.
+     * @return records, oldest first.
+     */
+    public static List<FlightRecord> read(File file) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+
+            if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not an exception flight recorder file: " + file);
+            }
+
+            int slots = buffer.getInt(8), slotSize = buffer.getInt(12);
+
+            if(buffer.capacity() != HEADER_SIZE + (long) slots * slotSize) {
+                throw new IOException("Truncated exception flight recorder file: " + file);
+            }
+
+            return new ExceptionFlightRecorder(buffer, slots, slotSize).last(slots);
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final ByteBuffer buffer;
+
+    private final int slots, slotSize;
+
+    // sequence + 1 of the record held by each slot, 0 when empty and negative while being written
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong cursor;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private ExceptionFlightRecorder(ByteBuffer buffer, int slots, int slotSize) {
+
+        this.buffer = buffer;
+        this.slots = slots;
+        this.slotSize = slotSize;
+        this.sequences = new AtomicLongArray(slots);
+
+        long next = 0;
+
+        // recover the sequences of records already in the buffer (mapped files)
+        for(int slot = 0; slot < slots; slot++) {
+            long committed = buffer.getLong(offset(slot));
+
+            if(committed > 0 && (committed - 1) % slots == slot) {
+                sequences.set(slot, committed);
+                next = Math.max(next, committed);
+            }
+        }
+
+        this.cursor = new AtomicLong(next);
+    }
+
+    @Override
+    public void onBuild(ExceptionModel model) {
+        record(model);
+    }
+
+    /**
+     * Records a snapshot of the model, never blocks.
+     * @param model model.
+     * @return false if the record was dropped because its slot was still being written.
+     */
+    public boolean record(ExceptionModel model) {
+
+        long sequence = cursor.getAndIncrement();
+        int slot = (int) (sequence % slots);
+        long current = sequences.get(slot);
+
+        if(current < 0 || current > sequence || !sequences.compareAndSet(slot, current, -(sequence + 1))) {
+            dropped.increment();
+            return false;
+        }
+
+        int start = offset(slot);
+        int end = start + slotSize;
+
+        // clear the committed sequence first, so that a torn write is never trusted after a crash
+        buffer.putLong(start, 0);
+
+        int position = start + SLOT_HEADER_SIZE;
+        buffer.putLong(position, model.getDateTime() == null ? Long.MIN_VALUE : model.getDateTime().getTime());
+        buffer.putInt(position + 8, model.getHttpStatusCode());
+        position += FIXED_SIZE;
+
+        position = putString(position, end, STRINGS - 1, model.getExceptionId());
+        position = putString(position, end, STRINGS - 2, model.getExceptionClass());
+        position = putString(position, end, STRINGS - 3, model.getApplicationName());
+        position = putString(position, end, STRINGS - 4, model.getMessage());
+        position = putString(position, end, STRINGS - 5, model.getPath());
+        position = putString(position, end, STRINGS - 6, model.getTraceId());
+        position = putString(position, end, STRINGS - 7, model.getSpanId());
+        position = putCodes(position, end, model);
+
+        buffer.putInt(start + 8, position - start - SLOT_HEADER_SIZE);
+        buffer.putLong(start, sequence + 1);
+        sequences.set(slot, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Returns the most recent records.
+     * @param count maximum number of records, cannot be negative.
+     * @return records, oldest first.
+     */
+    public List<FlightRecord> last(int count) {
+
+        if(count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative: " + count);
+        }
+
+        List<FlightRecord> records = new ArrayList<FlightRecord>(Math.min(count, slots));
+        long newest = cursor.get() - 1;
+
+        for(long sequence = newest; sequence >= 0 && sequence > newest - slots && records.size() < count; sequence--) {
+
+            FlightRecord record = read(sequence);
+
+            if(record != null) {
+                records.add(record);
+            }
+        }
+
+        Collections.reverse(records);
+        return records;
+    }
+
+    /**
+     * Prints the most recent records, one per line, oldest first.
+     */
+    public void dump(PrintStream out, int count) {
+
+        for(FlightRecord record : last(count)) {
+            out.println(record);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Dumps the most recent records when the JVM shuts down.
+     * @return the hook, which can be removed using {@link Runtime#removeShutdownHook(Thread)}.
+     */
+    public Thread dumpOnShutdown(final PrintStream out, final int count) {
+
+        Thread hook = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dump(out, count);
+            }
+        }, "exception-flight-recorder-dump");
+
+        Runtime.getRuntime().addShutdownHook(hook);
+        return hook;
+    }
+
+    /**
+     * Forces the records to disk when backed by a file.
+     */
+    public void flush() {
+        if(buffer instanceof MappedByteBuffer && !buffer.isReadOnly()) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    /**
+     * @return number of records dropped because their slot was still being written.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    // ----------------
+    // Reading
+    // ----------------
+
+    private FlightRecord read(long sequence) {
+
+        int slot = (int) (sequence % slots);
+
+        if(sequences.get(slot) != sequence + 1) {
+            return null;
+        }
+
+        int start = offset(slot), end = start + slotSize;
+        int position = start + SLOT_HEADER_SIZE;
+        ByteBuffer view = buffer.duplicate();
+        long dateTime = buffer.getLong(position);
+        int httpStatusCode = buffer.getInt(position + 8);
+        String[] values = new String[STRINGS];
+        position += FIXED_SIZE;
+
+        for(int i = 0; i < STRINGS; i++) {
+
+            if(position + 2 > end) {
+                return null;
+            }
+
+            int length = buffer.getShort(position) & 0xFFFF;
+            position += 2;
+
+            if(length == NULL_LENGTH) {
+                continue;
+            }
+
+            if(position + length > end) {
+                return null;
+            }
+
+            byte[] bytes = new byte[length];
+            view.position(position);
+            view.get(bytes);
+
+            values[i] = new String(bytes, UTF_8);
+            position += length;
+        }
+
+        // the plain reads of the slot must not be reordered after the sequence is checked again
+        VarHandle.loadLoadFence();
+
+        // the slot was overwritten while it was being read
+        if(sequences.get(slot) != sequence + 1) {
+            return null;
+        }
+
+        return new FlightRecord(sequence, dateTime, httpStatusCode, values);
+    }
+
+    // ----------------
+    // Writing
+    // ----------------
+
+    /**
+     * Writes the string, leaving room for the length of the strings that follow it.
+     */
+    private int putString(int position, int end, int following, String value) {
+
+        int limit = end - 2 * following;
+
+        if(value == null) {
+            buffer.putShort(position, (short) NULL_LENGTH);
+            return position + 2;
+        }
+
+        int written = putChars(position + 2, Math.min(limit, position + 2 + NULL_LENGTH - 1), value);
+        buffer.putShort(position, (short) (written - position - 2));
+        return written;
+    }
+
+    private int putCodes(int position, int end, ExceptionModel model) {
+
+        if(model.getBusinessCodes() == null || model.getBusinessCodes().isEmpty()) {
+            buffer.putShort(position, (short) NULL_LENGTH);
+            return position + 2;
+        }
+
+        int limit = Math.min(end, position + 2 + NULL_LENGTH - 1);
+        int written = position + 2;
+
+        for(String code : model.getBusinessCodes().keySet()) {
+
+            if(written > position + 2) {
+                if(written + 1 > limit) {
+                    break;
+                }
+                buffer.put(written++, (byte) ',');
+            }
+
+            written = putChars(written, limit, code);
+        }
+
+        buffer.putShort(position, (short) (written - position - 2));
+        return written;
+    }
+
+    /**
+     * Writes the chars as UTF-8 until the limit is reached, never splitting a character.
+     */
+    private int putChars(int position, int limit, String value) {
+
+        for(int i = 0; i < value.length(); i++) {
+
+            char c = value.charAt(i);
+
+            if(c < 0x80) {
+                if(position + 1 > limit) break;
+                buffer.put(position++, (byte) c);
+            }
+            else if(c < 0x800) {
+                if(position + 2 > limit) break;
+                buffer.put(position++, (byte) (0xc0 | (c >> 6)));
+                buffer.put(position++, (byte) (0x80 | (c & 0x3f)));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                if(position + 4 > limit) break;
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put(position++, (byte) (0xf0 | (codePoint >> 18)));
+                buffer.put(position++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put(position++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put(position++, (byte) (0x80 | (codePoint & 0x3f)));
+            }
+            else if(Character.isSurrogate(c)) {
+                // unpaired surrogate, written as '?' like String.getBytes(UTF-8)
+                if(position + 1 > limit) break;
+                buffer.put(position++, (byte) '?');
+            }
+            else {
+                if(position + 3 > limit) break;
+                buffer.put(position++, (byte) (0xe0 | (c >> 12)));
+                buffer.put(position++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put(position++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+
+        return position;
+    }
+
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private static void validate(int slots, int slotSize) {
+
+        if(slots <= 0 || slotSize < MIN_SLOT_SIZE || (long) slots * slotSize > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid recorder size, slots: " + slots + ", slot size: " + slotSize
+                    + " (minimum " + MIN_SLOT_SIZE + ")");
+        }
+    }
+
+    private static void clear(ByteBuffer buffer) {
+
+        byte[] zeros = new byte[Math.min(ZEROS_SIZE, buffer.capacity())];
+        ByteBuffer view = buffer.duplicate();
+        view.clear();
+
+        while (view.hasRemaining()) {
+            view.put(zeros, 0, Math.min(zeros.length, view.remaining()));
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int slots, int slotSize) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slots);
+        buffer.putInt(12, slotSize);
+    }
+
+    private static boolean hasHeader(ByteBuffer buffer, int slots, int slotSize) {
+        return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && buffer.getInt(8) == slots && buffer.getInt(12) == slotSize;
+    }
+}
@@ -1,7 +1,5 @@
 package com.shedhack.exception.core;
 
-import com.google.gson.Gson;
-
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -25,6 +23,8 @@ import java.util.regex.Pattern;
  *      Contains correlation Ids so that external service failures can be traced using this ID.
  * - Http status code
  * - Http status desc
+ * - Retryable: whether the failed operation can be retried, see {@link com.shedhack.exception.core.ExceptionClassifier}.
+ * - Severity: see {@link com.shedhack.exception.core.Severity}.
  * - Help Link: HTTP resource that can detail business codes/http codes.
  * - Message: exception message.
  * - Exception Class: root exception class that was caught and wrapped.
@@ -53,6 +53,18 @@ public class ExceptionModel {
 
         ExceptionModel model = new ExceptionModel();
 
+        private PayloadPolicy payloadPolicy = PayloadPolicy.getDefault();
+
+        private final StringInterner interner = StringInterner.getDefault();
+
+        private Locale locale;
+
+        // codes added so far, to localize them again if the locale changes
+        private List<BusinessCode> codes;
+
+        // JFR event, null unless it is being recorded
+        private Object event = ExceptionEvents.beginExceptionModel();
+
         public Builder(String applicationName, Exception exception) {
 
             model = new ExceptionModel();
@@ -60,23 +72,46 @@ public class ExceptionModel {
                 .withExceptionId(UUID.randomUUID().toString())
                     .withException(exception.getClass().getName(), exception.getMessage() != null ? exception.getMessage() : DEFAULT_ERROR_MESSAGE)
                         .withDateTime(new Date())
-                            .withExceptionChain(findExceptionChain(exception))
-                                .withMetaData(METADATA);
+                            .withExceptionChain(ExceptionChains.find(exception))
+                                .withMetaData(METADATA)
+                                    .withClassification(ExceptionClassifier.getDefault().classify(exception))
+                                        .withTraceContext(TraceContext.current());
         }
 
         /**
          * Sets the ID, attempts to find correlation ID, business codes, HTTP code .
+         * The HTTP code, retryability and severity are resolved through the {@link ExceptionClassifier}.
+         * The trace and span Ids of the exception take precedence over those of the current {@link TraceContext}.
+         * Flyweight exceptions (see {@link FlyweightBusinessExceptions}) are shared, so a new ID is always generated for them.
          */
         public Builder(String applicationName, BusinessException exception) {
+            this(applicationName, exception, TraceContext.current());
+        }
+
+        /**
+         * @param context context to copy, see {@link #withTraceContext(TraceContext)}; null for none.
+         */
+        Builder(String applicationName, BusinessException exception, TraceContext context) {
 
             model = new ExceptionModel();
 
+            String exceptionId = exception.isFrozen() || Utils.isEmptyOrNull(exception.getExceptionId())
+                    ? UUID.randomUUID().toString() : exception.getExceptionId();
+
+            List<ExceptionChainModel> chain = ExceptionChains.find(exception);
+
+            if(exception.isFrozen()) {
+                chain.get(0).setCorrelationId(exceptionId);
+            }
+
             withApplicationName(applicationName)
-                .withExceptionId(Utils.isEmptyOrNull(exception.getExceptionId()) ? UUID.randomUUID().toString() :  exception.getExceptionId())
+                .withExceptionId(exceptionId)
                     .withException(exception.getClass().getName(), exception.getMessage() != null ? exception.getMessage() : DEFAULT_ERROR_MESSAGE)
                         .withDateTime(new Date())
-                            .withExceptionChain(findExceptionChain(exception))
-                                .withMetaData(METADATA);
+                            .withExceptionChain(chain)
+                                .withMetaData(METADATA)
+                                    .withTraceContext(context)
+                                        .withCorrelationId(exception.getCorrelationId());
 
             if(!Utils.isCollectionNullOrEmpty(exception.getBusinessCodes())) {
                 withBusinessCodes(exception.getBusinessCodes());
@@ -86,9 +121,15 @@ public class ExceptionModel {
                 withParams(exception.getParams());
             }
 
+            if(!Utils.isEmptyOrNull(exception.getTraceId())) {
+                withTraceId(exception.getTraceId());
+            }
+
             if(!Utils.isEmptyOrNull(exception.getSpanId())) {
                 withSpanId(exception.getSpanId());
             }
+
+            withClassification(ExceptionClassifier.getDefault().classify(exception));
         }
 
         public Builder withExceptionId(String exceptionId) {
@@ -96,6 +137,11 @@ public class ExceptionModel {
             return this;
         }
 
+        public Builder withCorrelationId(String correlationId) {
+            model.correlationId = correlationId;
+            return this;
+        }
+
         public Builder withSpanId(String spanId) {
             model.spanId = spanId;
             return this;
@@ -107,7 +153,39 @@ public class ExceptionModel {
         }
 
         public Builder withPath(String path) {
-            model.path = path;
+            model.path = interner.intern(path);
+            return this;
+        }
+
+        /**
+         * Copies the trace Id, span Id, session Id, path and locale which have been set on the context.
+         * @param context may be null, in which case nothing is copied.
+         */
+        public Builder withTraceContext(TraceContext context) {
+
+            if(context != null) {
+
+                if(context.getTraceId() != null) {
+                    model.traceId = context.getTraceId();
+                }
+
+                if(context.getSpanId() != null) {
+                    model.spanId = context.getSpanId();
+                }
+
+                if(context.getSessionId() != null) {
+                    model.sessionId = context.getSessionId();
+                }
+
+                if(context.getPath() != null) {
+                    model.path = interner.intern(context.getPath());
+                }
+
+                if(context.getLocale() != null) {
+                    withLocale(context.getLocale());
+                }
+            }
+
             return this;
         }
 
@@ -123,7 +201,41 @@ public class ExceptionModel {
 
         public Builder withHttpCode(int code, String description) {
             model.httpStatusCode = code;
-            model.httpStatusDescription = description;
+            model.httpStatusDescription = interner.intern(description);
+            return this;
+        }
+
+        public Builder withRetryable(boolean retryable) {
+            model.retryable = retryable;
+            return this;
+        }
+
+        public Builder withSeverity(Severity severity) {
+            model.severity = severity == null ? null : severity.name();
+            return this;
+        }
+
+        /**
+         * Applies the HTTP status, retryability and severity, those which the classification doesn't decide are left as they are.
+         * @param classification classification, ignored if null.
+         */
+        public Builder withClassification(ExceptionClassification classification) {
+
+            if(classification != null) {
+
+                if(classification.getHttpStatusCode() > 0) {
+                    withHttpCode(classification.getHttpStatusCode(), classification.getHttpStatusDescription());
+                }
+
+                if(classification.getRetryable() != null) {
+                    withRetryable(classification.getRetryable());
+                }
+
+                if(classification.getSeverity() != null) {
+                    withSeverity(classification.getSeverity());
+                }
+            }
+
             return this;
         }
 
@@ -133,7 +245,7 @@ public class ExceptionModel {
         }
 
         public Builder withException(String exceptionClass, String message) {
-            model.exceptionClass = exceptionClass;
+            model.exceptionClass = interner.intern(exceptionClass);
             model.message = message;
             return this;
         }
@@ -148,13 +260,41 @@ public class ExceptionModel {
             return this;
         }
 
+        /**
+         * Adds the code, with its description in the builder's locale (see {@link #withLocale(Locale)}).
+         */
         public Builder withBusinessCode(BusinessCode code) {
-            model.businessCodes.put(code.getCode(), code.getDescription());
+
+            if(codes == null) {
+                codes = new ArrayList<BusinessCode>(2);
+            }
+
+            codes.add(code);
+            model.businessCodes.put(interner.intern(code.getCode()), interner.intern(code.getDescription(locale)));
             return this;
         }
 
         public Builder withBusinesssCodes(Map<String, String> codes) {
             model.businessCodes = codes;
+            this.codes = null;
+            return this;
+        }
+
+        /**
+         * Locale of the business code descriptions, codes which have already been added are described again.
+         * Defaults to the locale of the current {@link TraceContext}, if it has one.
+         * @param locale locale, null for the default descriptions.
+         */
+        public Builder withLocale(Locale locale) {
+
+            this.locale = locale;
+
+            if(codes != null) {
+                for(BusinessCode code : codes) {
+                    model.businessCodes.put(interner.intern(code.getCode()), interner.intern(code.getDescription(locale)));
+                }
+            }
+
             return this;
         }
 
@@ -168,7 +308,7 @@ public class ExceptionModel {
         }
 
         public Builder withApplicationName(String name) {
-            model.applicationName = name;
+            model.applicationName = interner.intern(name);
             return this;
         }
 
@@ -183,7 +323,7 @@ public class ExceptionModel {
         }
 
         public Builder withMetaData(String metaData) {
-            model.metadata = metaData;
+            model.metadata = interner.intern(metaData);
             return this;
         }
 
@@ -206,33 +346,36 @@ public class ExceptionModel {
             return this;
         }
 
+        /**
+         * Redaction and size budget applied to the request body, params and context when the model is built.
+         * Defaults to {@link PayloadPolicy#getDefault()}.
+         */
+        public Builder withPayloadPolicy(PayloadPolicy policy) {
+            this.payloadPolicy = policy == null ? PayloadPolicy.NONE : policy;
+            return this;
+        }
+
+        /**
+         * Applies the payload policy and notifies the {@link ExceptionModelListeners}.
+         */
         public ExceptionModel build() {
+            payloadPolicy.apply(model);
+            ExceptionModelListeners.fire(model);
+            ExceptionEvents.commitExceptionModel(event, model);
+            event = null;
             return model;
         }
 
-        private static List<ExceptionChainModel> findExceptionChain(Throwable throwable) {
-
-            List<ExceptionChainModel> chain = new ArrayList<ExceptionChainModel>();
-
-            while (throwable != null) {
-
-                String correlationId = null;
-
-                if(throwable instanceof BusinessException) {
-                    correlationId = ((BusinessException)throwable).getExceptionId();
-                }
-                else {
-                    correlationId = findCorrelation(throwable.getMessage());
-                }
-
-                chain.add(new ExceptionChainModel(correlationId, throwable.getMessage()));
-                throwable = throwable.getCause();
-            }
-
-            return chain;
+        /**
+         * Returns the model without applying the payload policy, notifying the listeners or recording an event,
+         * for models which aren't real failures (e.g. the prototypes of {@link ExceptionModelTemplate}).
+         */
+        ExceptionModel buildDetached() {
+            event = null;
+            return model;
         }
 
-        private static String findCorrelation(String message) {
+        static String findCorrelation(String message) {
 
             if(!Utils.isEmptyOrNull(message)) {
                 Matcher matcher = UUID_PATTERN.matcher(message);
@@ -269,12 +412,16 @@ public class ExceptionModel {
     // Class properties
     // ----------------
 
-    private String traceId, spanId, exceptionId, httpStatusDescription,
+    private String traceId, spanId, exceptionId, correlationId, httpStatusDescription,
             path, sessionId, helpLink, message, exceptionClass,
             applicationName, metadata, requestBody;
 
     private int httpStatusCode;
 
+    private Boolean retryable;
+
+    private String severity;
+
     private Map<String, Object> params = new HashMap<String, Object>();
 
     private Map<String, String> businessCodes = new HashMap<String, String>();
@@ -296,6 +443,14 @@ public class ExceptionModel {
         this.exceptionId = exceptionId;
     }
 
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
     public String getHttpStatusDescription() {
         return httpStatusDescription;
     }
@@ -360,6 +515,22 @@ public class ExceptionModel {
         this.httpStatusCode = httpStatusCode;
     }
 
+    public Boolean getRetryable() {
+        return retryable;
+    }
+
+    public void setRetryable(Boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public void setSeverity(String severity) {
+        this.severity = severity;
+    }
+
     public Map<String, Object> getParams() {
         return params;
     }
@@ -376,6 +547,9 @@ public class ExceptionModel {
         this.businessCodes = businessCodes;
     }
 
+    /**
+     * @return chain of exceptions.
+     */
     public List<ExceptionChainModel> getExceptionChain() {
         return exceptionChain;
     }
@@ -432,11 +606,15 @@ public class ExceptionModel {
         this.traceId = traceId;
     }
 
-    private static Gson GSON = new Gson();
-
+    /**
+     * @return JSON, see {@link ExceptionModelSerializers}.
+     */
     @Override
     public String toString() {
-        return GSON.toJson(this);
+        Object event = ExceptionEvents.beginSerialization();
+        String json = ExceptionModelSerializers.get().serialize(this);
+        ExceptionEvents.commitSerialization(event, this, json);
+        return json;
     }
 
     @Override
@@ -450,6 +628,7 @@ public class ExceptionModel {
         if (httpStatusCode != that.httpStatusCode) return false;
         if (spanId != null ? !spanId.equals(that.spanId) : that.spanId != null) return false;
         if (exceptionId != null ? !exceptionId.equals(that.exceptionId) : that.exceptionId != null) return false;
+        if (correlationId != null ? !correlationId.equals(that.correlationId) : that.correlationId != null) return false;
         if (httpStatusDescription != null ? !httpStatusDescription.equals(that.httpStatusDescription) : that.httpStatusDescription != null)
             return false;
         if (path != null ? !path.equals(that.path) : that.path != null) return false;
@@ -462,6 +641,8 @@ public class ExceptionModel {
             return false;
         if (metadata != null ? !metadata.equals(that.metadata) : that.metadata != null) return false;
         if (requestBody != null ? !requestBody.equals(that.requestBody) : that.requestBody != null) return false;
+        if (retryable != null ? !retryable.equals(that.retryable) : that.retryable != null) return false;
+        if (severity != null ? !severity.equals(that.severity) : that.severity != null) return false;
         if (params != null ? !params.equals(that.params) : that.params != null) return false;
         if (businessCodes != null ? !businessCodes.equals(that.businessCodes) : that.businessCodes != null)
             return false;
@@ -477,6 +658,7 @@ public class ExceptionModel {
     public int hashCode() {
         int result = spanId != null ? spanId.hashCode() : 0;
         result = 31 * result + (exceptionId != null ? exceptionId.hashCode() : 0);
+        result = 31 * result + (correlationId != null ? correlationId.hashCode() : 0);
         result = 31 * result + (httpStatusDescription != null ? httpStatusDescription.hashCode() : 0);
         result = 31 * result + (path != null ? path.hashCode() : 0);
         result = 31 * result + (sessionId != null ? sessionId.hashCode() : 0);
@@ -487,6 +669,8 @@ public class ExceptionModel {
         result = 31 * result + (metadata != null ? metadata.hashCode() : 0);
         result = 31 * result + (requestBody != null ? requestBody.hashCode() : 0);
         result = 31 * result + httpStatusCode;
+        result = 31 * result + (retryable != null ? retryable.hashCode() : 0);
+        result = 31 * result + (severity != null ? severity.hashCode() : 0);
         result = 31 * result + (params != null ? params.hashCode() : 0);
         result = 31 * result + (businessCodes != null ? businessCodes.hashCode() : 0);
         result = 31 * result + (context != null ? context.hashCode() : 0);
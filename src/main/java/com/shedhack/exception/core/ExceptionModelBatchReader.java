@@ -0,0 +1,446 @@
+package com.shedhack.exception.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ * Reads batches written by {@link ExceptionModelBatchWriter}. The file is memory mapped and only the columns which
+ * are asked for are inflated and decoded, the other properties of the returned models are left as they are in
+ * a new {@link ExceptionModel}. Param and context values are returned as strings.
+ *
+ * <pre>
+ * List&lt;ExceptionModel&gt; models = ExceptionModelBatchReader.open(file)
+ *         .read(ExceptionModelColumn.BUSINESS_CODES, ExceptionModelColumn.DATE_TIME);
+ * </pre>
+ * </p>
+ *
+ * @author imamchishty
+ */
+public class ExceptionModelBatchReader {
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final MappedByteBuffer buffer;
+
+    private final int rows;
+
+    private final Map<ExceptionModelColumn, Block> blocks;
+
+    private ExceptionModelBatchReader(MappedByteBuffer buffer, int rows, Map<ExceptionModelColumn, Block> blocks) {
+        this.buffer = buffer;
+        this.rows = rows;
+        this.blocks = blocks;
+    }
+
+    public static ExceptionModelBatchReader open(File file) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+
+            if(buffer.capacity() < 16 || buffer.getInt(0) != ExceptionModelBatchWriter.MAGIC
+                    || buffer.getInt(4) != ExceptionModelBatchWriter.VERSION) {
+                throw new IOException("Not an exception model batch: " + file);
+            }
+
+            int rows = buffer.getInt(8);
+            int count = buffer.getInt(12);
+
+            if(rows < 0 || count < 0) {
+                throw new IOException("Corrupt exception model batch: " + file);
+            }
+
+            return new ExceptionModelBatchReader(buffer, rows, directory(buffer, count, file));
+        }
+        catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated exception model batch: " + file, e);
+        }
+        catch (BufferUnderflowException e) {
+            throw new IOException("Truncated exception model batch: " + file, e);
+        }
+        finally {
+            // the mapping stays valid once the file is closed
+            raf.close();
+        }
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * @return columns held by the file.
+     */
+    public Set<ExceptionModelColumn> getColumns() {
+        return Collections.unmodifiableSet(blocks.keySet());
+    }
+
+    public List<ExceptionModel> readAll() throws IOException {
+        return read(EnumSet.allOf(ExceptionModelColumn.class));
+    }
+
+    public List<ExceptionModel> read(ExceptionModelColumn... columns) throws IOException {
+        return read(columns.length == 0 ? EnumSet.noneOf(ExceptionModelColumn.class) : EnumSet.copyOf(Arrays.asList(columns)));
+    }
+
+    /**
+     * @return a model per row, with only the given columns populated.
+     */
+    public List<ExceptionModel> read(Set<ExceptionModelColumn> columns) throws IOException {
+
+        List<ExceptionModel> models = new ArrayList<ExceptionModel>(rows);
+
+        for(int i = 0; i < rows; i++) {
+            models.add(new ExceptionModel());
+        }
+
+        for(ExceptionModelColumn column : columns) {
+
+            Block block = blocks.get(column);
+
+            if(block != null) {
+                try {
+                    decode(column, new ColumnData(inflate(block)), models);
+                }
+                catch (IndexOutOfBoundsException e) {
+                    throw new IOException("Corrupt exception model batch column " + column, e);
+                }
+                catch (NegativeArraySizeException e) {
+                    throw new IOException("Corrupt exception model batch column " + column, e);
+                }
+            }
+        }
+
+        return models;
+    }
+
+    // ----------------
+    // Helpers
+    // ----------------
+
+    /**
+     * Reads the column names and lengths which follow the header.
+     */
+    private static Map<ExceptionModelColumn, Block> directory(MappedByteBuffer buffer, int count, File file) throws IOException {
+
+        ByteBuffer input = buffer.duplicate();
+        input.position(16);
+
+        List<ExceptionModelColumn> names = new ArrayList<ExceptionModelColumn>();
+        List<int[]> lengths = new ArrayList<int[]>();
+
+        for(int i = 0; i < count; i++) {
+
+            byte[] name = new byte[input.getShort() & 0xffff];
+            input.get(name);
+
+            int[] length = {input.getInt(), input.getInt()};
+
+            if(length[0] < 0 || length[1] < 0) {
+                throw new IOException("Corrupt exception model batch: " + file);
+            }
+
+            names.add(column(new String(name, ExceptionModelBatchWriter.UTF_8)));
+            lengths.add(length);
+        }
+
+        Map<ExceptionModelColumn, Block> blocks = new EnumMap<ExceptionModelColumn, Block>(ExceptionModelColumn.class);
+        long position = input.position();
+
+        for(int i = 0; i < count; i++) {
+
+            // columns written by a newer version are skipped
+            if(names.get(i) != null) {
+                blocks.put(names.get(i), new Block((int) position, lengths.get(i)[0], lengths.get(i)[1]));
+            }
+
+            position += lengths.get(i)[1];
+
+            if(position > buffer.capacity()) {
+                throw new IOException("Truncated exception model batch: " + file);
+            }
+        }
+
+        return blocks;
+    }
+
+    private static ExceptionModelColumn column(String name) {
+        try {
+            return ExceptionModelColumn.valueOf(name);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] inflate(Block block) throws IOException {
+
+        // inflated straight from the mapping, without copying the compressed bytes
+        ByteBuffer compressed = buffer.duplicate();
+        compressed.limit(block.offset + block.compressedLength);
+        compressed.position(block.offset);
+
+        byte[] raw = new byte[block.rawLength];
+        Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+
+            while (length < raw.length && !inflater.finished()) {
+
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+
+                if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                length += inflated;
+            }
+
+            if(length != raw.length) {
+                throw new IOException("Corrupt exception model batch column");
+            }
+
+            return raw;
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Corrupt exception model batch column", e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    private void decode(ExceptionModelColumn column, ColumnData data, List<ExceptionModel> models) {
+
+        long dateTime = 0;
+
+        for(ExceptionModel model : models) {
+
+            switch (column) {
+
+                case EXCEPTION_ID:
+                    model.setExceptionId(data.string());
+                    break;
+
+                case TRACE_ID:
+                    model.setTraceId(data.string());
+                    break;
+
+                case SPAN_ID:
+                    model.setSpanId(data.string());
+                    break;
+
+                case CORRELATION_ID:
+                    model.setCorrelationId(data.string());
+                    break;
+
+                case SESSION_ID:
+                    model.setSessionId(data.string());
+                    break;
+
+                case APPLICATION_NAME:
+                    model.setApplicationName(data.entry());
+                    break;
+
+                case EXCEPTION_CLASS:
+                    model.setExceptionClass(data.entry());
+                    break;
+
+                case MESSAGE:
+                    model.setMessage(data.string());
+                    break;
+
+                case METADATA:
+                    model.setMetadata(data.entry());
+                    break;
+
+                case PATH:
+                    model.setPath(data.entry());
+                    break;
+
+                case HELP_LINK:
+                    model.setHelpLink(data.entry());
+                    break;
+
+                case HTTP_STATUS_CODE:
+                    model.setHttpStatusCode((int) data.varint());
+                    break;
+
+                case HTTP_STATUS_DESCRIPTION:
+                    model.setHttpStatusDescription(data.entry());
+                    break;
+
+                case RETRYABLE:
+                    long retryable = data.varint();
+                    model.setRetryable(retryable == 0 ? null : Boolean.valueOf(retryable == 2));
+                    break;
+
+                case SEVERITY:
+                    model.setSeverity(data.entry());
+                    break;
+
+                case REQUEST_BODY:
+                    model.setRequestBody(data.string());
+                    break;
+
+                case BUSINESS_CODES:
+                    int codes = data.count();
+                    Map<String, String> businessCodes = codes < 0 ? null : new HashMap<String, String>();
+
+                    for(int i = 0; i < codes; i++) {
+                        businessCodes.put(data.entry(), data.entry());
+                    }
+
+                    model.setBusinessCodes(businessCodes);
+                    break;
+
+                case PARAMS:
+                    model.setParams(readMap(data));
+                    break;
+
+                case CONTEXT:
+                    model.setContext(readMap(data));
+                    break;
+
+                case EXCEPTION_CHAIN:
+                    int entries = data.count();
+                    List<ExceptionChainModel> chain = entries < 0 ? null : new ArrayList<ExceptionChainModel>(entries);
+
+                    for(int i = 0; i < entries; i++) {
+                        chain.add(new ExceptionChainModel(data.string(), data.string()));
+                    }
+
+                    model.setExceptionChain(chain);
+                    break;
+
+                case DATE_TIME:
+                    long value = data.varint();
+
+                    if(value != 0) {
+                        value--;
+                        dateTime += (value >>> 1) ^ -(value & 1);
+                        model.setDateTime(new Date(dateTime));
+                    }
+                    else {
+                        model.setDateTime(null);
+                    }
+                    break;
+
+                default:
+                    throw new IllegalStateException("Unknown column " + column);
+            }
+        }
+    }
+
+    private static Map<String, Object> readMap(ColumnData data) {
+
+        int count = data.count();
+        Map<String, Object> map = count < 0 ? null : new LinkedHashMap<String, Object>();
+
+        for(int i = 0; i < count; i++) {
+            map.put(data.entry(), data.string());
+        }
+
+        return map;
+    }
+
+    /**
+     * Location of a compressed column within the file.
+     */
+    private static final class Block {
+
+        private final int offset, rawLength, compressedLength;
+
+        Block(int offset, int rawLength, int compressedLength) {
+            this.offset = offset;
+            this.rawLength = rawLength;
+            this.compressedLength = compressedLength;
+        }
+    }
+
+    /**
+     * Inflated column, read in row order.
+     */
+    private static final class ColumnData {
+
+        private final byte[] data;
+
+        private final String[] dictionary;
+
+        private int position;
+
+        ColumnData(byte[] data) {
+
+            this.data = data;
+            this.dictionary = new String[(int) varint()];
+
+            for(int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = string();
+            }
+        }
+
+        long varint() {
+
+            long value = 0;
+
+            for(int shift = 0; ; shift += 7) {
+
+                byte b = data[position++];
+                value |= (long) (b & 0x7f) << shift;
+
+                if(b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        String string() {
+
+            int length = (int) varint() - 1;
+
+            if(length < 0) {
+                return null;
+            }
+
+            String value = new String(data, position, length, ExceptionModelBatchWriter.UTF_8);
+            position += length;
+            return value;
+        }
+
+        String entry() {
+            int index = (int) varint();
+            return index == 0 ? null : dictionary[index - 1];
+        }
+
+        /**
+         * @return -1 for null.
+         */
+        int count() {
+            return (int) varint() - 1;
+        }
+    }
+}
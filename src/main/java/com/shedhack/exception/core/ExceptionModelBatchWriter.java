@@ -0,0 +1,309 @@
+package com.shedhack.exception.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * Writes {@link ExceptionModel}s column by column, for offline analytics. Models are encoded as they are added,
+ * so they don't have to be kept; {@link #writeTo(File)} compresses each column separately with {@link Deflater}.
+ * Read the file back with {@link ExceptionModelBatchReader}.
+ *
+ * File layout: magic, version, row count and column count, then a directory (column name, raw and compressed
+ * length) followed by the compressed columns. Each column starts with its dictionary (possibly empty), followed by
+ * the values of every row. Strings are written as their UTF-8 length + 1 (0 for null) and bytes, dictionary entries
+ * and counts as their index/count + 1 (0 for null), all as unsigned varints.
+ *
+ * Not thread safe.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public class ExceptionModelBatchWriter {
+
+    static final int MAGIC = 0x45584d42;
+
+    static final int VERSION = 1;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final int level;
+
+    private final Map<ExceptionModelColumn, ColumnBuffer> columns = new EnumMap<ExceptionModelColumn, ColumnBuffer>(ExceptionModelColumn.class);
+
+    private int rows;
+
+    private long lastDateTime;
+
+    public ExceptionModelBatchWriter() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level compression level, see {@link Deflater}.
+     */
+    public ExceptionModelBatchWriter(int level) {
+
+        this.level = level;
+
+        for(ExceptionModelColumn column : ExceptionModelColumn.values()) {
+            columns.put(column, new ColumnBuffer());
+        }
+    }
+
+    public ExceptionModelBatchWriter addAll(Collection<ExceptionModel> models) {
+
+        for(ExceptionModel model : models) {
+            add(model);
+        }
+
+        return this;
+    }
+
+    public ExceptionModelBatchWriter add(ExceptionModel model) {
+
+        column(ExceptionModelColumn.EXCEPTION_ID).string(model.getExceptionId());
+        column(ExceptionModelColumn.TRACE_ID).string(model.getTraceId());
+        column(ExceptionModelColumn.SPAN_ID).string(model.getSpanId());
+        column(ExceptionModelColumn.CORRELATION_ID).string(model.getCorrelationId());
+        column(ExceptionModelColumn.SESSION_ID).string(model.getSessionId());
+        column(ExceptionModelColumn.APPLICATION_NAME).entry(model.getApplicationName());
+        column(ExceptionModelColumn.EXCEPTION_CLASS).entry(model.getExceptionClass());
+        column(ExceptionModelColumn.MESSAGE).string(model.getMessage());
+        column(ExceptionModelColumn.METADATA).entry(model.getMetadata());
+        column(ExceptionModelColumn.PATH).entry(model.getPath());
+        column(ExceptionModelColumn.HELP_LINK).entry(model.getHelpLink());
+        column(ExceptionModelColumn.HTTP_STATUS_CODE).varint(model.getHttpStatusCode() & 0xffffffffL);
+        column(ExceptionModelColumn.HTTP_STATUS_DESCRIPTION).entry(model.getHttpStatusDescription());
+        column(ExceptionModelColumn.RETRYABLE).varint(model.getRetryable() == null ? 0 : model.getRetryable() ? 2 : 1);
+        column(ExceptionModelColumn.SEVERITY).entry(model.getSeverity());
+        column(ExceptionModelColumn.REQUEST_BODY).string(model.getRequestBody());
+
+        ColumnBuffer codes = column(ExceptionModelColumn.BUSINESS_CODES);
+
+        if(codes.count(model.getBusinessCodes() == null ? -1 : model.getBusinessCodes().size())) {
+            for(Map.Entry<String, String> code : model.getBusinessCodes().entrySet()) {
+                codes.entry(code.getKey());
+                codes.entry(code.getValue());
+            }
+        }
+
+        writeMap(column(ExceptionModelColumn.PARAMS), model.getParams());
+        writeMap(column(ExceptionModelColumn.CONTEXT), model.getContext());
+
+        ColumnBuffer chain = column(ExceptionModelColumn.EXCEPTION_CHAIN);
+
+        if(chain.count(model.getExceptionChain() == null ? -1 : model.getExceptionChain().size())) {
+            for(ExceptionChainModel entry : model.getExceptionChain()) {
+                chain.string(entry == null ? null : entry.getCorrelationId());
+                chain.string(entry == null ? null : entry.getMessage());
+            }
+        }
+
+        ColumnBuffer dateTime = column(ExceptionModelColumn.DATE_TIME);
+
+        if(model.getDateTime() == null) {
+            dateTime.varint(0);
+        }
+        else {
+            long time = model.getDateTime().getTime();
+            long delta = time - lastDateTime;
+            lastDateTime = time;
+            dateTime.varint(((delta << 1) ^ (delta >> 63)) + 1);
+        }
+
+        rows++;
+        return this;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public void writeTo(File file) throws IOException {
+
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            writeTo(out);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+
+        List<byte[]> raw = new ArrayList<byte[]>();
+        List<byte[]> compressed = new ArrayList<byte[]>();
+
+        for(ColumnBuffer column : columns.values()) {
+            byte[] bytes = column.toByteArray();
+            raw.add(bytes);
+            compressed.add(deflate(bytes));
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(rows);
+        data.writeInt(columns.size());
+
+        int index = 0;
+
+        for(ExceptionModelColumn column : columns.keySet()) {
+            data.writeUTF(column.name());
+            data.writeInt(raw.get(index).length);
+            data.writeInt(compressed.get(index).length);
+            index++;
+        }
+
+        for(byte[] bytes : compressed) {
+            data.write(bytes);
+        }
+
+        data.flush();
+    }
+
+    // ----------------
+    // Helpers
+    // ----------------
+
+    private ColumnBuffer column(ExceptionModelColumn column) {
+        return columns.get(column);
+    }
+
+    private static void writeMap(ColumnBuffer column, Map<String, Object> map) {
+
+        if(column.count(map == null ? -1 : map.size())) {
+            for(Map.Entry<String, Object> entry : map.entrySet()) {
+                column.entry(entry.getKey());
+                column.string(entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+            }
+        }
+    }
+
+    private byte[] deflate(byte[] bytes) {
+
+        Deflater deflater = new Deflater(level);
+
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+            byte[] buffer = new byte[8192];
+
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Values of one column, plus its dictionary.
+     */
+    private static final class ColumnBuffer {
+
+        private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+
+        private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+        private final List<String> entries = new ArrayList<String>();
+
+        void varint(long value) {
+            writeVarint(values, value);
+        }
+
+        void string(String value) {
+            writeString(values, value);
+        }
+
+        /**
+         * Dictionary encoded string.
+         */
+        void entry(String value) {
+
+            if(value == null) {
+                varint(0);
+                return;
+            }
+
+            Integer index = dictionary.get(value);
+
+            if(index == null) {
+                index = entries.size();
+                dictionary.put(value, index);
+                entries.add(value);
+            }
+
+            varint(index + 1);
+        }
+
+        /**
+         * @param count -1 for null.
+         * @return true if there are values to write.
+         */
+        boolean count(int count) {
+            varint(count + 1);
+            return count > 0;
+        }
+
+        byte[] toByteArray() {
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(values.size() + entries.size() * 16 + 8);
+            writeVarint(out, entries.size());
+
+            for(String entry : entries) {
+                writeString(out, entry);
+            }
+
+            byte[] bytes = values.toByteArray();
+            out.write(bytes, 0, bytes.length);
+            return out.toByteArray();
+        }
+
+        private static void writeVarint(ByteArrayOutputStream out, long value) {
+
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+
+            out.write((int) value);
+        }
+
+        private static void writeString(ByteArrayOutputStream out, String value) {
+
+            if(value == null) {
+                writeVarint(out, 0);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarint(out, bytes.length + 1L);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.shedhack.exception.core;
+
+/**
+ * <p>
+ * Columns of an {@link ExceptionModel} batch, see {@link ExceptionModelBatchWriter} and {@link ExceptionModelBatchReader}.
+ *
+ * Low cardinality columns (application name, exception class, business codes etc) are dictionary encoded, the
+ * date/time column holds the difference to the previous row. Param and context values are stored as strings.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public enum ExceptionModelColumn {
+
+    EXCEPTION_ID,
+
+    TRACE_ID,
+
+    SPAN_ID,
+
+    CORRELATION_ID,
+
+    SESSION_ID,
+
+    APPLICATION_NAME,
+
+    EXCEPTION_CLASS,
+
+    MESSAGE,
+
+    METADATA,
+
+    PATH,
+
+    HELP_LINK,
+
+    HTTP_STATUS_CODE,
+
+    HTTP_STATUS_DESCRIPTION,
+
+    RETRYABLE,
+
+    SEVERITY,
+
+    BUSINESS_CODES,
+
+    PARAMS,
+
+    CONTEXT,
+
+    EXCEPTION_CHAIN,
+
+    REQUEST_BODY,
+
+    DATE_TIME
+}
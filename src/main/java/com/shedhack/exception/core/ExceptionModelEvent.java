@@ -0,0 +1,45 @@
+package com.shedhack.exception.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event emitted when an {@link ExceptionModel} is built, the duration covers the use of the builder.
+ *
+ * @author imamchishty
+ */
+@Name("com.shedhack.exception.ExceptionModel")
+@Label("Exception Model")
+@Category("Exception Core")
+@Description("ExceptionModel built")
+final class ExceptionModelEvent extends jdk.jfr.Event {
+
+    @Label("Exception Id")
+    String exceptionId;
+
+    @Label("Exception Class")
+    String exceptionClass;
+
+    @Label("Business Codes")
+    String businessCodes;
+
+    @Label("Trace Id")
+    String traceId;
+
+    @Label("Span Id")
+    String spanId;
+
+    @Label("HTTP Status Code")
+    int httpStatusCode;
+
+    @Label("Chain Depth")
+    int chainDepth;
+
+    @Label("Request Body Size")
+    @Description("Size of the request body held by the model, in UTF-8 bytes")
+    @DataAmount
+    long requestBodySize;
+}
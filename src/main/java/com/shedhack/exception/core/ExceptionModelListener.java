@@ -0,0 +1,16 @@
+package com.shedhack.exception.core;
+
+/**
+ * Notified each time an {@link ExceptionModel} is built, see {@link ExceptionModelListeners}.
+ * Listeners are called on the building thread so they should be quick and must not throw.
+ *
+ * @author imamchishty
+ */
+public interface ExceptionModelListener {
+
+    /**
+     * @param model model which has just been built.
+     */
+    void onBuild(ExceptionModel model);
+
+}
@@ -0,0 +1,54 @@
+package com.shedhack.exception.core;
+
+import java.util.Arrays;
+
+/**
+ * Registry of {@link ExceptionModelListener}s which are notified by {@link ExceptionModel.Builder#build()}.
+ * The listeners are held in a copy on write array so notifying them is lock free.
+ *
+ * @author imamchishty
+ */
+public final class ExceptionModelListeners {
+
+    private static volatile ExceptionModelListener[] listeners = new ExceptionModelListener[0];
+
+    private ExceptionModelListeners() {
+    }
+
+    public static synchronized void add(ExceptionModelListener listener) {
+        ExceptionModelListener[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[copy.length - 1] = listener;
+        listeners = copy;
+    }
+
+    public static synchronized void remove(ExceptionModelListener listener) {
+
+        ExceptionModelListener[] current = listeners;
+
+        for(int i = 0; i < current.length; i++) {
+
+            if(current[i] == listener) {
+                ExceptionModelListener[] copy = new ExceptionModelListener[current.length - 1];
+                System.arraycopy(current, 0, copy, 0, i);
+                System.arraycopy(current, i + 1, copy, i, current.length - i - 1);
+                listeners = copy;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Notifies every listener, a failing listener doesn't stop the others or the build.
+     */
+    static void fire(ExceptionModel model) {
+
+        for(ExceptionModelListener listener : listeners) {
+            try {
+                listener.onBuild(model);
+            }
+            catch (RuntimeException e) {
+                // listeners are diagnostics, they must never break the error handling itself
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.shedhack.exception.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event emitted when an {@link ExceptionModel} is serialized.
+ *
+ * @author imamchishty
+ */
+@Name("com.shedhack.exception.ExceptionModelSerialization")
+@Label("Exception Model Serialization")
+@Category("Exception Core")
+@Description("ExceptionModel serialized to JSON")
+@StackTrace(false)
+final class ExceptionModelSerializationEvent extends jdk.jfr.Event {
+
+    @Label("Exception Id")
+    String exceptionId;
+
+    @Label("Business Codes")
+    String businessCodes;
+
+    @Label("Trace Id")
+    String traceId;
+
+    @Label("Chain Depth")
+    int chainDepth;
+
+    @Label("Payload Size")
+    @Description("Size of the serialized model, in UTF-8 bytes")
+    @DataAmount
+    long payloadSize;
+}
@@ -0,0 +1,20 @@
+package com.shedhack.exception.core;
+
+/**
+ * Serializes the {@link ExceptionModel} to JSON, used by {@link ExceptionModel#toString()}.
+ *
+ * Implementations are discovered using {@link java.util.ServiceLoader}, see {@link ExceptionModelSerializers}.
+ * When none can be loaded the dependency free {@link DefaultExceptionModelSerializer} is used.
+ * Implementations must be thread safe.
+ *
+ * @author imamchishty
+ */
+public interface ExceptionModelSerializer {
+
+    /**
+     * @param model model to serialize.
+     * @return JSON.
+     */
+    String serialize(ExceptionModel model);
+
+}
@@ -0,0 +1,68 @@
+package com.shedhack.exception.core;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Provides the {@link ExceptionModelSerializer}, which is only looked up and created on first use.
+ *
+ * The first implementation found by the {@link ServiceLoader} that can be created is used, implementations whose
+ * dependencies are missing (e.g. {@link GsonExceptionModelSerializer} without Gson on the classpath) are skipped.
+ * If there are none the {@link DefaultExceptionModelSerializer} is used.
+ *
+ * @author imamchishty
+ */
+public final class ExceptionModelSerializers {
+
+    private static volatile ExceptionModelSerializer override;
+
+    private ExceptionModelSerializers() {
+    }
+
+    /**
+     * @return serializer, the configured one if {@link #set(ExceptionModelSerializer)} was called.
+     */
+    public static ExceptionModelSerializer get() {
+        ExceptionModelSerializer serializer = override;
+        return serializer != null ? serializer : Holder.DISCOVERED;
+    }
+
+    /**
+     * Replaces the discovered serializer, null goes back to the discovered one.
+     */
+    public static void set(ExceptionModelSerializer serializer) {
+        override = serializer;
+    }
+
+    static ExceptionModelSerializer discover(ClassLoader classLoader) {
+
+        Iterator<ExceptionModelSerializer> iterator = ServiceLoader.load(ExceptionModelSerializer.class, classLoader).iterator();
+
+        while (true) {
+            try {
+                if(!iterator.hasNext()) {
+                    break;
+                }
+
+                return iterator.next();
+            }
+            catch (ServiceConfigurationError e) {
+                // provider (or its dependencies) missing, try the next one
+            }
+            catch (LinkageError e) {
+                // as above
+            }
+        }
+
+        return new DefaultExceptionModelSerializer();
+    }
+
+    /**
+     * Lazy holder, the service lookup happens the first time a model is serialized.
+     */
+    private static final class Holder {
+
+        private static final ExceptionModelSerializer DISCOVERED = discover(ExceptionModelSerializers.class.getClassLoader());
+    }
+}
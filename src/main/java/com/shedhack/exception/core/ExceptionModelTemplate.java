@@ -0,0 +1,399 @@
+package com.shedhack.exception.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Pre-rendered JSON for constant business failures.
+ *
+ * For a given application name, {@link BusinessCode} and HTTP status the serialized {@link ExceptionModel}
+ * of a flyweight exception (see {@link FlyweightBusinessExceptions}) only differs in the exception Id,
+ * date/time, trace Id, span Id and path. The static parts are rendered once, by the same serializer used by
+ * {@link ExceptionModel#toString()}, and stored as UTF-8 bytes. At request time only the dynamic fields are
+ * escaped and spliced in, the output is identical to serializing the full model.
+ *
+ * Templates are cached, one per application name/code/status/description combination. The locale only changes the
+ * description of the code, so locales which resolve to the same description (e.g. any locale without a bundle) share
+ * a template and the cache is bounded by the bundles rather than by the locales requested. They are rendered without
+ * the current {@link TraceContext}, so the session Id is never part of a template.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public final class ExceptionModelTemplate {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ConcurrentMap<Key, ExceptionModelTemplate> CACHE = new ConcurrentHashMap<Key, ExceptionModelTemplate>();
+
+    private static final String[] DYNAMIC_FIELDS = {"exceptionId", "traceId", "spanId", "path", "dateTime"};
+
+    /**
+     * Returns the cached template for the combination, in the locale of the current {@link TraceContext}.
+     * @param applicationName application name.
+     * @param code business code.
+     * @param httpStatusCode http status code.
+     * @param httpStatusDescription http status description, may be null.
+     * @return template.
+     */
+    public static ExceptionModelTemplate of(String applicationName, BusinessCode code, int httpStatusCode, String httpStatusDescription) {
+
+        TraceContext context = TraceContext.current();
+        return of(applicationName, code, httpStatusCode, httpStatusDescription, context == null ? null : context.getLocale());
+    }
+
+    /**
+     * Returns the cached template for the combination, rendering it on first use.
+     * @param applicationName application name.
+     * @param code business code.
+     * @param httpStatusCode http status code.
+     * @param httpStatusDescription http status description, may be null.
+     * @param locale locale of the business code description, null for the default description.
+     * @return template.
+     */
+    public static ExceptionModelTemplate of(String applicationName, BusinessCode code, int httpStatusCode, String httpStatusDescription, Locale locale) {
+
+        Key key = new Key(applicationName, code, httpStatusCode, httpStatusDescription, code.getDescription(locale));
+        ExceptionModelTemplate template = CACHE.get(key);
+
+        if(template == null) {
+            ExceptionModelTemplate created = new ExceptionModelTemplate(key, locale);
+            template = CACHE.putIfAbsent(key, created);
+
+            if(template == null) {
+                template = created;
+            }
+        }
+
+        return template;
+    }
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final Part[] parts;
+
+    private ExceptionModelTemplate(Key key, Locale locale) {
+
+        // placeholders make sure every dynamic field is rendered so that its position is known, the prototype
+        // isn't a real failure so it is detached from the context, the listeners and the recorded events
+        ExceptionModel prototype = new ExceptionModel.Builder(key.applicationName, FlyweightBusinessExceptions.of(key.code), null)
+                .withLocale(locale)
+                .withHttpCode(key.httpStatusCode, key.httpStatusDescription)
+                .withTraceId("trace").withSpanId("span").withPath("path")
+                .buildDetached();
+
+        String idToken = "\"" + prototype.getExceptionId() + "\"";
+        List<Part> compiled = new ArrayList<Part>();
+        StringBuilder statics = new StringBuilder();
+
+        for(String member : splitMembers(prototype.toString())) {
+
+            int dynamic = dynamicField(member);
+
+            if(dynamic < 0 && !member.contains(idToken)) {
+                statics.append(statics.length() == 0 ? "" : ",").append(member);
+                continue;
+            }
+
+            if(statics.length() > 0) {
+                compiled.add(new Part(-1, statics.toString().getBytes(UTF_8), null));
+                statics.setLength(0);
+            }
+
+            if(dynamic >= 0) {
+                compiled.add(new Part(dynamic, ("\"" + DYNAMIC_FIELDS[dynamic] + "\":").getBytes(UTF_8), null));
+            }
+            else {
+                // static member which refers to the exception Id, e.g. the head of the exception chain
+                String[] pieces = member.split(Pattern.quote(idToken), -1);
+                byte[][] bytes = new byte[pieces.length][];
+
+                for(int i = 0; i < pieces.length; i++) {
+                    bytes[i] = pieces[i].getBytes(UTF_8);
+                }
+
+                compiled.add(new Part(-1, null, bytes));
+            }
+        }
+
+        if(statics.length() > 0) {
+            compiled.add(new Part(-1, statics.toString().getBytes(UTF_8), null));
+        }
+
+        this.parts = compiled.toArray(new Part[compiled.size()]);
+    }
+
+    /**
+     * Writes the JSON model, null values are omitted in the same way as the full serializer.
+     * Many small writes are made so a buffered stream should be used.
+     *
+     * @param out output stream, UTF-8 bytes are written.
+     * @param exceptionId exception Id, cannot be null.
+     * @param dateTime date/time of the failure.
+     * @param traceId trace Id.
+     * @param spanId span Id.
+     * @param path http resource.
+     */
+    public void writeTo(OutputStream out, String exceptionId, Date dateTime, String traceId, String spanId, String path) throws IOException {
+        write(out, values(exceptionId, dateTime, traceId, spanId, path));
+    }
+
+    /**
+     * Convenience method which renders the JSON as a byte array, see {@link #writeTo}. The array is sized exactly
+     * up front, so nothing is copied.
+     */
+    public byte[] render(String exceptionId, Date dateTime, String traceId, String spanId, String path) {
+
+        String[] values = values(exceptionId, dateTime, traceId, spanId, path);
+        ArrayOutput out = new ArrayOutput(length(values));
+
+        try {
+            write(out, values);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return out.bytes;
+    }
+
+    private static String[] values(String exceptionId, Date dateTime, String traceId, String spanId, String path) {
+
+        if(exceptionId == null) {
+            throw new IllegalArgumentException("Exception Id cannot be null.");
+        }
+
+        return new String[] {exceptionId, traceId, spanId, path, dateTime == null ? null : JsonStrings.formatDate(dateTime)};
+    }
+
+    private void write(OutputStream out, String[] values) throws IOException {
+
+        boolean first = true;
+
+        out.write('{');
+
+        for(Part part : parts) {
+
+            if(part.field >= 0 && values[part.field] == null) {
+                continue;
+            }
+
+            if(!first) {
+                out.write(',');
+            }
+
+            first = false;
+
+            if(part.field >= 0) {
+                out.write(part.bytes);
+                JsonStrings.writeQuoted(out, values[part.field]);
+            }
+            else if(part.bytes != null) {
+                out.write(part.bytes);
+            }
+            else {
+                for(int i = 0; i < part.pieces.length; i++) {
+
+                    if(i > 0) {
+                        JsonStrings.writeQuoted(out, values[0]);
+                    }
+
+                    out.write(part.pieces[i]);
+                }
+            }
+        }
+
+        out.write('}');
+    }
+
+    /**
+     * @return number of bytes {@link #write(OutputStream, String[])} writes.
+     */
+    private int length(String[] values) {
+
+        int length = 2, written = 0;
+
+        for(Part part : parts) {
+
+            if(part.field >= 0 && values[part.field] == null) {
+                continue;
+            }
+
+            written++;
+
+            if(part.field >= 0) {
+                length += part.bytes.length + JsonStrings.quotedLength(values[part.field]);
+            }
+            else if(part.bytes != null) {
+                length += part.bytes.length;
+            }
+            else {
+                for(byte[] piece : part.pieces) {
+                    length += piece.length;
+                }
+
+                length += (part.pieces.length - 1) * JsonStrings.quotedLength(values[0]);
+            }
+        }
+
+        // commas between the members
+        return length + Math.max(0, written - 1);
+    }
+
+    private static int dynamicField(String member) {
+
+        for(int i = 0; i < DYNAMIC_FIELDS.length; i++) {
+            if(member.startsWith("\"" + DYNAMIC_FIELDS[i] + "\":")) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Splits the top level JSON object into its members, e.g. <code>"key":value</code>.
+     */
+    static List<String> splitMembers(String json) {
+
+        List<String> members = new ArrayList<String>();
+        int depth = 0, start = 1;
+        boolean inString = false;
+
+        for(int i = 0; i < json.length(); i++) {
+
+            char c = json.charAt(i);
+
+            if(inString) {
+                if(c == '\\') {
+                    i++;
+                }
+                else if(c == '"') {
+                    inString = false;
+                }
+            }
+            else if(c == '"') {
+                inString = true;
+            }
+            else if(c == '{' || c == '[') {
+                depth++;
+            }
+            else if(c == '}' || c == ']') {
+                if(--depth == 0 && i > start) {
+                    members.add(json.substring(start, i));
+                }
+            }
+            else if(c == ',' && depth == 1) {
+                members.add(json.substring(start, i));
+                start = i + 1;
+            }
+        }
+
+        return members;
+    }
+
+    // ----------------
+    // Inner classes
+    // ----------------
+
+    /**
+     * Either static bytes, a dynamic field (field index + key bytes) or pieces to be joined by the exception Id.
+     */
+    private static final class Part {
+
+        private final int field;
+
+        private final byte[] bytes;
+
+        private final byte[][] pieces;
+
+        private Part(int field, byte[] bytes, byte[][] pieces) {
+            this.field = field;
+            this.bytes = bytes;
+            this.pieces = pieces;
+        }
+    }
+
+    /**
+     * Output stream over an array which is exactly the size of what is written.
+     */
+    private static final class ArrayOutput extends OutputStream {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        private ArrayOutput(int size) {
+            this.bytes = new byte[size];
+        }
+
+        @Override
+        public void write(int b) {
+            bytes[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) {
+            System.arraycopy(b, offset, bytes, position, length);
+            position += length;
+        }
+    }
+
+    private static final class Key {
+
+        private final String applicationName, httpStatusDescription;
+
+        private final BusinessCode code;
+
+        private final int httpStatusCode;
+
+        // description of the code in the requested locale
+        private final String description;
+
+        private Key(String applicationName, BusinessCode code, int httpStatusCode, String httpStatusDescription, String description) {
+            this.applicationName = applicationName;
+            this.code = code;
+            this.httpStatusCode = httpStatusCode;
+            this.httpStatusDescription = httpStatusDescription;
+            this.description = description;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key that = (Key) o;
+
+            if (httpStatusCode != that.httpStatusCode) return false;
+            if (applicationName != null ? !applicationName.equals(that.applicationName) : that.applicationName != null) return false;
+            if (httpStatusDescription != null ? !httpStatusDescription.equals(that.httpStatusDescription) : that.httpStatusDescription != null)
+                return false;
+            if (description != null ? !description.equals(that.description) : that.description != null) return false;
+
+            return code.equals(that.code);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = applicationName != null ? applicationName.hashCode() : 0;
+            result = 31 * result + code.hashCode();
+            result = 31 * result + httpStatusCode;
+            result = 31 * result + (httpStatusDescription != null ? httpStatusDescription.hashCode() : 0);
+            result = 31 * result + (description != null ? description.hashCode() : 0);
+            return result;
+        }
+    }
+}
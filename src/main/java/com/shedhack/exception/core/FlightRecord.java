@@ -0,0 +1,104 @@
+package com.shedhack.exception.core;
+
+import java.util.Date;
+
+/**
+ * Compact snapshot of an {@link ExceptionModel} read back from the {@link ExceptionFlightRecorder}.
+ * Strings may have been cut short to fit the recorder's slot size.
+ *
+ * @author imamchishty
+ */
+public final class FlightRecord {
+
+    private final long sequence;
+
+    private final long dateTime;
+
+    private final int httpStatusCode;
+
+    private final String exceptionId, exceptionClass, applicationName, message, path, traceId, spanId, businessCodes;
+
+    FlightRecord(long sequence, long dateTime, int httpStatusCode, String[] values) {
+        this.sequence = sequence;
+        this.dateTime = dateTime;
+        this.httpStatusCode = httpStatusCode;
+        this.exceptionId = values[0];
+        this.exceptionClass = values[1];
+        this.applicationName = values[2];
+        this.message = values[3];
+        this.path = values[4];
+        this.traceId = values[5];
+        this.spanId = values[6];
+        this.businessCodes = values[7];
+    }
+
+    /**
+     * @return position of the record in the recorder, increases by one for every model recorded.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return date/time, null if the model didn't have one.
+     */
+    public Date getDateTime() {
+        return dateTime == Long.MIN_VALUE ? null : new Date(dateTime);
+    }
+
+    public int getHttpStatusCode() {
+        return httpStatusCode;
+    }
+
+    public String getExceptionId() {
+        return exceptionId;
+    }
+
+    public String getExceptionClass() {
+        return exceptionClass;
+    }
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * @return business codes separated by commas, null if there weren't any.
+     */
+    public String getBusinessCodes() {
+        return businessCodes;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightRecord{" +
+                "sequence=" + sequence +
+                ", dateTime=" + getDateTime() +
+                ", httpStatusCode=" + httpStatusCode +
+                ", exceptionId='" + exceptionId + '\'' +
+                ", exceptionClass='" + exceptionClass + '\'' +
+                ", applicationName='" + applicationName + '\'' +
+                ", message='" + message + '\'' +
+                ", path='" + path + '\'' +
+                ", traceId='" + traceId + '\'' +
+                ", spanId='" + spanId + '\'' +
+                ", businessCodes='" + businessCodes + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+package com.shedhack.exception.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Factory for preallocated, immutable {@link BusinessException}s, one per {@link BusinessCode}.
+ *
+ * Useful for control flow failures such as validation or not-found cases where the stack trace adds
+ * nothing and the cost of creating a new exception for every throw is not wanted. The instances returned
+ * are frozen (setters throw {@link UnsupportedOperationException}), stackless and carry no exception Id.
+ * {@link ExceptionModel.Builder} recognises them and generates a fresh exception Id and date/time
+ * for each occurrence.
+ *
+ * Enum based codes are cached per enum class and looked up by ordinal, other codes are cached by equality.
+ *
+ * @author imamchishty
+ */
+public final class FlyweightBusinessExceptions {
+
+    private static final ClassValue<BusinessException[]> ENUM_CACHE = new ClassValue<BusinessException[]>() {
+
+        @Override
+        protected BusinessException[] computeValue(Class<?> type) {
+
+            Object[] constants = type.getEnumConstants();
+            BusinessException[] exceptions = new BusinessException[constants.length];
+
+            for(int i = 0; i < constants.length; i++) {
+                exceptions[i] = new BusinessException((BusinessCode) constants[i]);
+            }
+
+            return exceptions;
+        }
+    };
+
+    private static final ConcurrentMap<BusinessCode, BusinessException> CODE_CACHE =
+            new ConcurrentHashMap<BusinessCode, BusinessException>();
+
+    private FlyweightBusinessExceptions() {
+    }
+
+    /**
+     * Returns the shared exception for the code, creating it on first use.
+     * @param code business code, cannot be null.
+     * @return frozen, stackless business exception.
+     */
+    public static BusinessException of(BusinessCode code) {
+
+        if(code == null) {
+            throw new IllegalArgumentException("Business code cannot be null.");
+        }
+
+        if(code instanceof Enum) {
+            Enum<?> constant = (Enum<?>) code;
+            return ENUM_CACHE.get(constant.getDeclaringClass())[constant.ordinal()];
+        }
+
+        BusinessException exception = CODE_CACHE.get(code);
+
+        if(exception == null) {
+            BusinessException created = new BusinessException(code);
+            exception = CODE_CACHE.putIfAbsent(code, created);
+
+            if(exception == null) {
+                exception = created;
+            }
+        }
+
+        return exception;
+    }
+}
@@ -0,0 +1,27 @@
+package com.shedhack.exception.core;
+
+import com.google.gson.Gson;
+
+/**
+ * {@link ExceptionModelSerializer} using Gson, registered as a service and used when Gson is on the classpath.
+ * Gson is an optional dependency of this library.
+ *
+ * @author imamchishty
+ */
+public class GsonExceptionModelSerializer implements ExceptionModelSerializer {
+
+    private final Gson gson;
+
+    public GsonExceptionModelSerializer() {
+        this(new Gson());
+    }
+
+    public GsonExceptionModelSerializer(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public String serialize(ExceptionModel model) {
+        return gson.toJson(model);
+    }
+}
@@ -0,0 +1,457 @@
+package com.shedhack.exception.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Tracks the most frequent business codes, exception classes and paths over a sliding time window, in fixed memory,
+ * for dashboards. Register it with {@link ExceptionModelListeners#add(ExceptionModelListener)} so that it sees every
+ * model that is built.
+ *
+ * The window is split into buckets, each holding a Count-Min sketch and a small table of candidate keys per
+ * dimension. Updates are lock free: a few atomic increments and, when a key becomes heavier than the lightest
+ * candidate in its neighbourhood, a CAS into the candidate table. Expired buckets are replaced as time moves on.
+ *
+ * Counts are estimates, never lower than the real count and, with probability {@link HeavyHitter#getConfidence()},
+ * no more than {@link HeavyHitter#getError()} higher. Keys which are much rarer than the reported ones may be
+ * missing from the candidate tables.
+ *
+ * <pre>
+ * HeavyHitterTracker tracker = HeavyHitterTracker.builder().withWindow(5, TimeUnit.MINUTES).build();
+ * ExceptionModelListeners.add(tracker);
+ * List&lt;HeavyHitterTracker.HeavyHitter&gt; top = tracker.top(HeavyHitterTracker.Dimension.BUSINESS_CODE, 10);
+ * </pre>
+ * </p>
+ *
+ * @author imamchishty
+ */
+public final class HeavyHitterTracker implements ExceptionModelListener {
+
+    /**
+     * Properties of the model which are tracked.
+     */
+    public enum Dimension {
+
+        BUSINESS_CODE,
+
+        EXCEPTION_CLASS,
+
+        PATH
+    }
+
+    private static final int[] SEEDS = {0x9e3779b9, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f, 0x165667b1, 0xd3a2646d, 0xfd7046c5, 0xb55a4f09};
+
+    // neighbouring candidate slots looked at by an update
+    private static final int PROBES = 4;
+
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // ----------------------------------
+    // Static inner class for the builder
+    // ----------------------------------
+
+    public static class Builder {
+
+        private long windowMillis = TimeUnit.MINUTES.toMillis(5);
+
+        private int buckets = 10, width = 512, depth = 4, candidates = 64;
+
+        public Builder withWindow(long duration, TimeUnit unit) {
+            this.windowMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * @param buckets number of buckets the window is split into, the window slides one bucket at a time.
+         */
+        public Builder withBuckets(int buckets) {
+            this.buckets = buckets;
+            return this;
+        }
+
+        /**
+         * @param width counters per row of the sketches, rounded up to a power of two. The error is at most
+         *              e / width of the number of events in the window.
+         */
+        public Builder withWidth(int width) {
+            this.width = width;
+            return this;
+        }
+
+        /**
+         * @param depth rows of the sketches (at most 8), the error bound fails with probability e^-depth per bucket.
+         */
+        public Builder withDepth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        /**
+         * @param candidates keys remembered per dimension and bucket, rounded up to a power of two.
+         */
+        public Builder withCandidates(int candidates) {
+            this.candidates = candidates;
+            return this;
+        }
+
+        public HeavyHitterTracker build() {
+
+            if(buckets <= 0 || windowMillis < buckets || width <= 0 || candidates <= 0 || depth <= 0 || depth > SEEDS.length) {
+                throw new IllegalArgumentException("Invalid heavy hitter tracker: window=" + windowMillis + "ms, buckets=" + buckets
+                        + ", width=" + width + ", depth=" + depth + ", candidates=" + candidates);
+            }
+
+            return new HeavyHitterTracker(windowMillis / buckets, buckets, powerOfTwo(width), depth, powerOfTwo(Math.max(PROBES, candidates)));
+        }
+
+        private static int powerOfTwo(int value) {
+            return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+        }
+    }
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final long bucketMillis;
+
+    private final int width, depth, candidates;
+
+    private final AtomicReferenceArray<Bucket> ring;
+
+    private HeavyHitterTracker(long bucketMillis, int buckets, int width, int depth, int candidates) {
+        this.bucketMillis = bucketMillis;
+        this.width = width;
+        this.depth = depth;
+        this.candidates = candidates;
+        this.ring = new AtomicReferenceArray<Bucket>(buckets);
+    }
+
+    @Override
+    public void onBuild(ExceptionModel model) {
+        record(model, System.currentTimeMillis());
+    }
+
+    public void record(ExceptionModel model, long timeMillis) {
+
+        Bucket bucket = bucket(timeMillis);
+
+        if(bucket == null) {
+            return;
+        }
+
+        if(model.getBusinessCodes() != null) {
+            for(String code : model.getBusinessCodes().keySet()) {
+                bucket.sketches[Dimension.BUSINESS_CODE.ordinal()].add(code);
+            }
+        }
+
+        bucket.sketches[Dimension.EXCEPTION_CLASS.ordinal()].add(model.getExceptionClass());
+        bucket.sketches[Dimension.PATH.ordinal()].add(model.getPath());
+    }
+
+    public void record(Dimension dimension, String key, long timeMillis) {
+
+        Bucket bucket = bucket(timeMillis);
+
+        if(bucket != null) {
+            bucket.sketches[dimension.ordinal()].add(key);
+        }
+    }
+
+    public List<HeavyHitter> top(Dimension dimension, int k) {
+        return top(dimension, k, System.currentTimeMillis());
+    }
+
+    /**
+     * @return up to k of the most frequent keys in the window ending at the given time, most frequent first.
+     */
+    public List<HeavyHitter> top(Dimension dimension, int k, long timeMillis) {
+
+        long epoch = timeMillis / bucketMillis;
+        List<Sketch> window = new ArrayList<Sketch>();
+
+        for(int i = 0; i < ring.length(); i++) {
+
+            Bucket bucket = ring.get(i);
+
+            if(bucket != null && bucket.epoch <= epoch && bucket.epoch > epoch - ring.length()) {
+                window.add(bucket.sketches[dimension.ordinal()]);
+            }
+        }
+
+        long total = 0;
+        Set<String> keys = new LinkedHashSet<String>();
+
+        for(Sketch sketch : window) {
+            total += sketch.total();
+            sketch.candidates(keys);
+        }
+
+        long error = (long) Math.ceil(Math.E / width * total);
+        double confidence = Math.max(0, 1 - window.size() * Math.exp(-depth));
+        List<HeavyHitter> hitters = new ArrayList<HeavyHitter>(keys.size());
+
+        for(String key : keys) {
+
+            long estimate = 0;
+
+            for(Sketch sketch : window) {
+                estimate += sketch.estimate(key);
+            }
+
+            if(estimate > 0) {
+                hitters.add(new HeavyHitter(key, estimate, error, total, confidence));
+            }
+        }
+
+        Collections.sort(hitters, new Comparator<HeavyHitter>() {
+            @Override
+            public int compare(HeavyHitter a, HeavyHitter b) {
+                return a.estimate != b.estimate ? (a.estimate > b.estimate ? -1 : 1) : a.key.compareTo(b.key);
+            }
+        });
+
+        return hitters.size() > k ? new ArrayList<HeavyHitter>(hitters.subList(0, k)) : hitters;
+    }
+
+    /**
+     * @return the bucket for the time, replacing an expired one; null if the time is older than the window.
+     */
+    private Bucket bucket(long timeMillis) {
+
+        long epoch = timeMillis / bucketMillis;
+        int slot = (int) ((epoch % ring.length() + ring.length()) % ring.length());
+        Bucket bucket = ring.get(slot);
+
+        while (bucket == null || bucket.epoch < epoch) {
+
+            Bucket fresh = new Bucket(epoch);
+
+            if(ring.compareAndSet(slot, bucket, fresh)) {
+                return fresh;
+            }
+
+            bucket = ring.get(slot);
+        }
+
+        return bucket.epoch == epoch ? bucket : null;
+    }
+
+    /**
+     * Sketches of one time bucket.
+     */
+    private final class Bucket {
+
+        private final long epoch;
+
+        private final Sketch[] sketches = new Sketch[DIMENSIONS.length];
+
+        private Bucket(long epoch) {
+
+            this.epoch = epoch;
+
+            for(int i = 0; i < sketches.length; i++) {
+                sketches[i] = new Sketch();
+            }
+        }
+    }
+
+    /**
+     * Count-Min sketch plus the candidate keys.
+     */
+    private final class Sketch {
+
+        private final AtomicLongArray counts = new AtomicLongArray(width * depth);
+
+        private final AtomicReferenceArray<String> keys = new AtomicReferenceArray<String>(candidates);
+
+        void add(String key) {
+
+            if(key == null) {
+                return;
+            }
+
+            int hash = key.hashCode();
+            long estimate = Long.MAX_VALUE;
+
+            for(int row = 0; row < depth; row++) {
+                estimate = Math.min(estimate, counts.incrementAndGet(index(hash, row)));
+            }
+
+            offer(key, hash, estimate);
+        }
+
+        long estimate(String key) {
+
+            int hash = key.hashCode();
+            long estimate = Long.MAX_VALUE;
+
+            for(int row = 0; row < depth; row++) {
+                estimate = Math.min(estimate, counts.get(index(hash, row)));
+            }
+
+            return estimate;
+        }
+
+        /**
+         * The counters of each row add up to the number of events.
+         */
+        long total() {
+
+            long total = 0;
+
+            for(int i = 0; i < width; i++) {
+                total += counts.get(i);
+            }
+
+            return total;
+        }
+
+        void candidates(Set<String> into) {
+
+            for(int i = 0; i < keys.length(); i++) {
+
+                String key = keys.get(i);
+
+                if(key != null) {
+                    into.add(key);
+                }
+            }
+        }
+
+        /**
+         * Keeps the key if there is room near its home slot or it is heavier than the lightest key there.
+         */
+        private void offer(String key, int hash, long estimate) {
+
+            int mask = keys.length() - 1;
+            int home = mix(hash, SEEDS[0]) & mask;
+            int lightestSlot = -1;
+            String lightest = null;
+            long lightestEstimate = Long.MAX_VALUE;
+
+            for(int probe = 0; probe < PROBES; probe++) {
+
+                int slot = (home + probe) & mask;
+                String resident = keys.get(slot);
+
+                if(resident == null) {
+                    if(keys.compareAndSet(slot, null, key)) {
+                        return;
+                    }
+                    resident = keys.get(slot);
+                }
+
+                if(resident == null || resident.equals(key)) {
+                    return;
+                }
+
+                long residentEstimate = estimate(resident);
+
+                if(residentEstimate < lightestEstimate) {
+                    lightestSlot = slot;
+                    lightest = resident;
+                    lightestEstimate = residentEstimate;
+                }
+            }
+
+            if(estimate > lightestEstimate) {
+                keys.compareAndSet(lightestSlot, lightest, key);
+            }
+        }
+
+        private int index(int hash, int row) {
+            return row * width + (mix(hash, SEEDS[row]) & (width - 1));
+        }
+    }
+
+    private static int mix(int hash, int seed) {
+        int h = (hash ^ seed) * 0x9e3779b1;
+        h ^= h >>> 15;
+        h *= 0x85ebca77;
+        return h ^ (h >>> 13);
+    }
+
+    /**
+     * Key and its estimated count within the window.
+     */
+    public static final class HeavyHitter {
+
+        private final String key;
+
+        private final long estimate, error, total;
+
+        private final double confidence;
+
+        HeavyHitter(String key, long estimate, long error, long total, double confidence) {
+            this.key = key;
+            this.estimate = estimate;
+            this.error = error;
+            this.total = total;
+            this.confidence = confidence;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return estimated count, never lower than the real count.
+         */
+        public long getEstimate() {
+            return estimate;
+        }
+
+        /**
+         * @return how much higher than the real count the estimate may be.
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * @return lowest possible real count (within the confidence).
+         */
+        public long getLowerBound() {
+            return Math.max(0, estimate - error);
+        }
+
+        /**
+         * @return number of events in the window, for all keys.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * @return probability that the real count is at least {@link #getLowerBound()}.
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+
+        @Override
+        public String toString() {
+            return "{\"HeavyHitter\":{"
+                    + "\"key\":\"" + key + "\""
+                    + ", \"estimate\":" + estimate
+                    + ", \"error\":" + error
+                    + ", \"total\":" + total
+                    + ", \"confidence\":" + confidence
+                    + "}}";
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.shedhack.exception.core;
+
+import jdk.jfr.FlightRecorder;
+
+import java.util.Collection;
+
+/**
+ * Creates and commits the JFR events, only loaded when <code>jdk.jfr</code> is available (see {@link ExceptionEvents}).
+ * Event fields are only filled in once <code>shouldCommit()</code> says the event will be recorded.
+ *
+ * @author imamchishty
+ */
+final class JfrExceptionEvents {
+
+    private JfrExceptionEvents() {
+    }
+
+    /**
+     * Until this is true no recording can be running, so the event classes (which are slow to load the first
+     * time) don't need to be touched.
+     * @return true once the flight recorder has been initialized, e.g. a recording was started in this JVM.
+     */
+    static boolean isRecorderInitialized() {
+        return FlightRecorder.isInitialized();
+    }
+
+    static Object beginBusinessException() {
+
+        BusinessExceptionEvent event = new BusinessExceptionEvent();
+
+        if(!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        return event;
+    }
+
+    static void commitBusinessException(Object value, BusinessException exception) {
+
+        BusinessExceptionEvent event = (BusinessExceptionEvent) value;
+        event.end();
+
+        if(event.shouldCommit()) {
+            event.exceptionId = exception.getExceptionId();
+            event.correlationId = exception.getCorrelationId();
+            event.businessCodes = joinCodes(exception.getBusinessCodes());
+            event.traceId = exception.getTraceId();
+            event.spanId = exception.getSpanId();
+            event.chainDepth = chainDepth(exception);
+            event.commit();
+        }
+    }
+
+    static Object beginExceptionModel() {
+
+        ExceptionModelEvent event = new ExceptionModelEvent();
+
+        if(!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        return event;
+    }
+
+    static void commitExceptionModel(Object value, ExceptionModel model) {
+
+        ExceptionModelEvent event = (ExceptionModelEvent) value;
+        event.end();
+
+        if(event.shouldCommit()) {
+            event.exceptionId = model.getExceptionId();
+            event.exceptionClass = model.getExceptionClass();
+            event.businessCodes = joinKeys(model);
+            event.traceId = model.getTraceId();
+            event.spanId = model.getSpanId();
+            event.httpStatusCode = model.getHttpStatusCode();
+            event.chainDepth = model.getExceptionChain() == null ? 0 : model.getExceptionChain().size();
+            event.requestBodySize = utf8Length(model.getRequestBody());
+            event.commit();
+        }
+    }
+
+    static Object beginSerialization() {
+
+        ExceptionModelSerializationEvent event = new ExceptionModelSerializationEvent();
+
+        if(!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        return event;
+    }
+
+    static void commitSerialization(Object value, ExceptionModel model, String json) {
+
+        ExceptionModelSerializationEvent event = (ExceptionModelSerializationEvent) value;
+        event.end();
+
+        if(event.shouldCommit()) {
+            event.exceptionId = model.getExceptionId();
+            event.businessCodes = joinKeys(model);
+            event.traceId = model.getTraceId();
+            event.chainDepth = model.getExceptionChain() == null ? 0 : model.getExceptionChain().size();
+            event.payloadSize = utf8Length(json);
+            event.commit();
+        }
+    }
+
+    /**
+     * @return size of the text in UTF-8 bytes, only worked out for events which are committed.
+     */
+    private static long utf8Length(String text) {
+
+        if(text == null) {
+            return 0;
+        }
+
+        long bytes = 0;
+
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+
+        return bytes;
+    }
+
+    private static int chainDepth(Throwable throwable) {
+
+        int depth = 0;
+
+        while (throwable != null && depth < 1024) {
+            depth++;
+            throwable = throwable.getCause();
+        }
+
+        return depth;
+    }
+
+    private static String joinCodes(Collection<BusinessCode> codes) {
+
+        if(Utils.isCollectionNullOrEmpty(codes)) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        for(BusinessCode code : codes) {
+            builder.append(builder.length() == 0 ? "" : ",").append(code.getCode());
+        }
+
+        return builder.toString();
+    }
+
+    private static String joinKeys(ExceptionModel model) {
+
+        if(model.getBusinessCodes() == null || model.getBusinessCodes().isEmpty()) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        for(String code : model.getBusinessCodes().keySet()) {
+            builder.append(builder.length() == 0 ? "" : ",").append(code);
+        }
+
+        return builder.toString();
+    }
+}
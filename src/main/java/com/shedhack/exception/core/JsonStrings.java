@@ -0,0 +1,210 @@
+package com.shedhack.exception.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * JSON string helpers which produce exactly the same output as Gson's default (HTML safe) writer,
+ * used where parts of the model are written without going through the full serializer.
+ *
+ * @author imamchishty
+ */
+final class JsonStrings {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT, Locale.US);
+        }
+    };
+
+    // the format has no fraction of a second, so the last date formatted is reused within the same second
+    private static volatile FormattedDate lastDate = new FormattedDate(Long.MIN_VALUE, null);
+
+    private JsonStrings() {
+    }
+
+    /**
+     * Formats the date in the same way as Gson's default date adapter.
+     */
+    static String formatDate(Date date) {
+
+        long second = Math.floorDiv(date.getTime(), 1000L);
+        FormattedDate last = lastDate;
+
+        if(last.second != second) {
+            last = new FormattedDate(second, DATE_FORMAT.get().format(date));
+            lastDate = last;
+        }
+
+        return last.text;
+    }
+
+    /**
+     * @return number of UTF-8 bytes written by {@link #writeQuoted(OutputStream, String)}.
+     */
+    static int quotedLength(String value) {
+
+        int bytes = 2;
+
+        for(int i = 0, length = value.length(); i < length; i++) {
+
+            char c = value.charAt(i);
+            String escape = escapeFor(c);
+
+            if(escape != null) {
+                bytes += escape.length();
+            }
+            else if(isUnicodeEscaped(c)) {
+                bytes += 6;
+            }
+            else if(c < 0x80) {
+                bytes++;
+            }
+            else if(c < 0x800) {
+                bytes += 2;
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            }
+            else if(Character.isSurrogate(c)) {
+                bytes++;
+            }
+            else {
+                bytes += 3;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Writes the value as a quoted, escaped JSON string encoded as UTF-8.
+     */
+    static void writeQuoted(OutputStream out, String value) throws IOException {
+
+        out.write('"');
+
+        for(int i = 0, length = value.length(); i < length; i++) {
+
+            char c = value.charAt(i);
+            String escape = escapeFor(c);
+
+            if(escape != null) {
+                writeAscii(out, escape);
+            }
+            else if(isUnicodeEscaped(c)) {
+                out.write('\\');
+                out.write('u');
+                out.write(HEX[(c >> 12) & 0xf]);
+                out.write(HEX[(c >> 8) & 0xf]);
+                out.write(HEX[(c >> 4) & 0xf]);
+                out.write(HEX[c & 0xf]);
+            }
+            else if(c < 0x80) {
+                out.write(c);
+            }
+            else if(c < 0x800) {
+                out.write(0xc0 | (c >> 6));
+                out.write(0x80 | (c & 0x3f));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.write(0xf0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3f));
+                out.write(0x80 | ((codePoint >> 6) & 0x3f));
+                out.write(0x80 | (codePoint & 0x3f));
+            }
+            else if(Character.isSurrogate(c)) {
+                // unpaired surrogate, String.getBytes(UTF-8) replaces these with '?'
+                out.write('?');
+            }
+            else {
+                out.write(0xe0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3f));
+                out.write(0x80 | (c & 0x3f));
+            }
+        }
+
+        out.write('"');
+    }
+
+    /**
+     * Appends the value as a quoted, escaped JSON string.
+     */
+    static void appendQuoted(StringBuilder builder, String value) {
+
+        builder.append('"');
+
+        int last = 0, length = value.length();
+
+        for(int i = 0; i < length; i++) {
+
+            char c = value.charAt(i);
+            String escape = escapeFor(c);
+
+            if(escape == null && !isUnicodeEscaped(c)) {
+                continue;
+            }
+
+            builder.append(value, last, i);
+
+            if(escape != null) {
+                builder.append(escape);
+            }
+            else {
+                builder.append("\\u").append((char) HEX[(c >> 12) & 0xf]).append((char) HEX[(c >> 8) & 0xf])
+                        .append((char) HEX[(c >> 4) & 0xf]).append((char) HEX[c & 0xf]);
+            }
+
+            last = i + 1;
+        }
+
+        builder.append(value, last, length).append('"');
+    }
+
+    /**
+     * Control characters, HTML sensitive characters and the JavaScript line separators are written as unicode escapes.
+     */
+    private static boolean isUnicodeEscaped(char c) {
+        return c < 0x20 || c == '<' || c == '>' || c == '&' || c == '=' || c == '\'' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static String escapeFor(char c) {
+
+        switch (c) {
+            case '"': return "\\\"";
+            case '\\': return "\\\\";
+            case '\t': return "\\t";
+            case '\b': return "\\b";
+            case '\n': return "\\n";
+            case '\r': return "\\r";
+            case '\f': return "\\f";
+            default: return null;
+        }
+    }
+
+    private static void writeAscii(OutputStream out, String value) throws IOException {
+        for(int i = 0; i < value.length(); i++) {
+            out.write(value.charAt(i));
+        }
+    }
+
+    private static final class FormattedDate {
+
+        private final long second;
+
+        private final String text;
+
+        private FormattedDate(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.shedhack.exception.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parsed exception message template, e.g. <code>"User {user} not found in {tenant}"</code>.
+ * Placeholders are replaced with the matching params of the exception, placeholders without a param are left as they are.
+ *
+ * Templates are parsed once per distinct template string and then cached (the cache is capped so that templates
+ * built from dynamic strings cannot fill the heap, those are simply parsed every time).
+ *
+ * Templates are serializable as they are held by {@link BusinessException}, deserialized templates are replaced by
+ * the cached instance.
+ *
+ * @author imamchishty
+ */
+public final class MessageTemplate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_CACHED = 4096;
+
+    private static final ConcurrentMap<String, MessageTemplate> CACHE = new ConcurrentHashMap<String, MessageTemplate>();
+
+    /**
+     * Returns the parsed template, from the cache if it has been seen before.
+     * @param template template string, cannot be null.
+     * @return parsed template.
+     */
+    public static MessageTemplate compile(String template) {
+
+        MessageTemplate compiled = CACHE.get(template);
+
+        if(compiled == null) {
+            compiled = new MessageTemplate(template);
+
+            if(CACHE.size() < MAX_CACHED) {
+                MessageTemplate existing = CACHE.putIfAbsent(template, compiled);
+                compiled = existing != null ? existing : compiled;
+            }
+        }
+
+        return compiled;
+    }
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final String template;
+
+    // literals[i] is followed by the param names[i], the last literal has no param
+    private final String[] literals;
+
+    private final String[] names;
+
+    private final int length;
+
+    private MessageTemplate(String template) {
+
+        List<String> literals = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        int start = 0, open;
+
+        while ((open = template.indexOf('{', start)) >= 0) {
+
+            int close = template.indexOf('}', open + 1);
+
+            if(close < 0) {
+                break;
+            }
+
+            literals.add(template.substring(start, open));
+            names.add(template.substring(open + 1, close));
+            start = close + 1;
+        }
+
+        literals.add(template.substring(start));
+
+        this.template = template;
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.names = names.toArray(new String[names.size()]);
+        this.length = template.length();
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Renders the message.
+     * @param params values bound to the placeholders by name, may be null.
+     * @return message.
+     */
+    public String render(Map<String, Object> params) {
+
+        if(names.length == 0) {
+            return template;
+        }
+
+        StringBuilder builder = new StringBuilder(length + 16 * names.length);
+
+        for(int i = 0; i < names.length; i++) {
+
+            builder.append(literals[i]);
+
+            if(params != null && params.containsKey(names[i])) {
+                builder.append(params.get(names[i]));
+            }
+            else {
+                builder.append('{').append(names[i]).append('}');
+            }
+        }
+
+        return builder.append(literals[names.length]).toString();
+    }
+
+    private Object readResolve() {
+        return compile(template);
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,759 @@
+package com.shedhack.exception.core;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Redaction and size budget for the payloads held by the {@link ExceptionModel}: the request body, params and context.
+ *
+ * Sensitive key names (case-insensitive) are compiled once into a trie. Values of matching keys are replaced by a mask,
+ * whether they are map entries, JSON members or form fields (<code>key=value&amp;...</code>) within the request body.
+ * Escaped key names (e.g. <code>"pass&#92;u0077ord"</code> or <code>pass%77ord</code>) are decoded as they are matched.
+ *
+ * Each field has a total budget in UTF-8 bytes. The request body is redacted and truncated in a single pass which
+ * stops once the budget is used. For the params and context the keys and values of all the entries share the budget:
+ * strings, numbers and the like are cut short and end with a truncation marker, maps, collections and arrays are
+ * walked until the budget is used (the remaining entries are left out, the remaining elements replaced by the
+ * marker) and any other values are replaced by their string form. Masked entries are not charged. So the cost of
+ * serializing a model is bounded no matter how large the original payload was.
+ *
+ * Policies are immutable and applied by {@link ExceptionModel.Builder#build()}, use
+ * {@link ExceptionModel.Builder#withPayloadPolicy(PayloadPolicy)} or {@link #setDefault(PayloadPolicy)}.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public final class PayloadPolicy {
+
+    /**
+     * Policy which leaves payloads untouched.
+     */
+    public static final PayloadPolicy NONE = new Builder().build();
+
+    private static final int UNLIMITED = -1;
+
+    private static final int MAX_DEPTH = 8;
+
+    private static volatile PayloadPolicy defaultPolicy = NONE;
+
+    /**
+     * @return policy used by builders which haven't been given one.
+     */
+    public static PayloadPolicy getDefault() {
+        return defaultPolicy;
+    }
+
+    public static void setDefault(PayloadPolicy policy) {
+        defaultPolicy = policy == null ? NONE : policy;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // ----------------------------------
+    // Static inner class for the builder
+    // ----------------------------------
+
+    public static class Builder {
+
+        private final Node root = new Node();
+
+        private boolean redacting;
+
+        private String mask = "******", truncationMarker = "...[truncated]";
+
+        private int requestBodyBudget = UNLIMITED, paramBudget = UNLIMITED, contextBudget = UNLIMITED;
+
+        public Builder withSensitiveKey(String key) {
+
+            if(!Utils.isEmptyOrNull(key)) {
+
+                Node node = root;
+
+                for(int i = 0; i < key.length(); i++) {
+                    node = node.add(Character.toLowerCase(key.charAt(i)));
+                }
+
+                node.terminal = true;
+                redacting = true;
+            }
+
+            return this;
+        }
+
+        public Builder withSensitiveKeys(String... keys) {
+
+            for(String key : keys) {
+                withSensitiveKey(key);
+            }
+
+            return this;
+        }
+
+        public Builder withMask(String mask) {
+
+            if(mask == null) {
+                throw new IllegalArgumentException("Mask cannot be null.");
+            }
+
+            this.mask = mask;
+            return this;
+        }
+
+        public Builder withTruncationMarker(String marker) {
+            this.truncationMarker = marker;
+            return this;
+        }
+
+        public Builder withRequestBodyBudget(int bytes) {
+            this.requestBodyBudget = bytes;
+            return this;
+        }
+
+        /**
+         * @param bytes total budget of the keys and values of the params, negative for no limit.
+         */
+        public Builder withParamBudget(int bytes) {
+            this.paramBudget = bytes;
+            return this;
+        }
+
+        /**
+         * @param bytes total budget of the keys and values of the context, negative for no limit.
+         */
+        public Builder withContextBudget(int bytes) {
+            this.contextBudget = bytes;
+            return this;
+        }
+
+        public PayloadPolicy build() {
+            return new PayloadPolicy(this);
+        }
+    }
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final Node keys;
+
+    private final boolean redacting;
+
+    private final String mask, truncationMarker;
+
+    private final int requestBodyBudget, paramBudget, contextBudget;
+
+    private PayloadPolicy(Builder builder) {
+        this.keys = builder.root.copy();
+        this.redacting = builder.redacting;
+        this.mask = builder.mask;
+        this.truncationMarker = builder.truncationMarker;
+        this.requestBodyBudget = builder.requestBodyBudget;
+        this.paramBudget = builder.paramBudget;
+        this.contextBudget = builder.contextBudget;
+    }
+
+    /**
+     * @return true if this policy neither redacts nor truncates.
+     */
+    public boolean isNone() {
+        return !redacting && requestBodyBudget < 0 && paramBudget < 0 && contextBudget < 0;
+    }
+
+    /**
+     * @return true if the key is one of the sensitive keys (case-insensitive).
+     */
+    public boolean isSensitive(CharSequence key) {
+
+        if(!redacting || key == null) {
+            return false;
+        }
+
+        Node node = keys;
+
+        for(int i = 0; i < key.length() && node != null; i++) {
+            node = node.next(Character.toLowerCase(key.charAt(i)));
+        }
+
+        return node != null && node.terminal;
+    }
+
+    /**
+     * Applies the policy to the payloads of the model, maps are replaced rather than modified
+     * as they may be shared with the exception.
+     */
+    void apply(ExceptionModel model) {
+
+        if(isNone()) {
+            return;
+        }
+
+        if(model.getRequestBody() != null) {
+            model.setRequestBody(applyToBody(model.getRequestBody()));
+        }
+
+        if(!Utils.isMapNullOrEmpty(model.getParams())) {
+            model.setParams(applyToMap(model.getParams(), paramBudget));
+        }
+
+        if(!Utils.isMapNullOrEmpty(model.getContext())) {
+            model.setContext(applyToMap(model.getContext(), contextBudget));
+        }
+    }
+
+    /**
+     * Redacts sensitive JSON members or form fields and truncates the body to its budget, in one pass.
+     */
+    public String applyToBody(String body) {
+
+        if(body == null || (!redacting && fits(body, requestBodyBudget))) {
+            return body;
+        }
+
+        Output out = new Output(requestBodyBudget, Math.min(body.length(), requestBodyBudget < 0 ? body.length() : requestBodyBudget) + 16);
+        int start = skipWhitespace(body, 0);
+        boolean json = start < body.length() && (body.charAt(start) == '{' || body.charAt(start) == '[');
+
+        if(json) {
+            redactJson(body, out);
+        }
+        else {
+            redactForm(body, out);
+        }
+
+        return out.finish(truncationMarker);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> applyToMap(Map<String, Object> map, int budget) {
+        return (Map<String, Object>) (Map<?, ?>) applyToEntries(map, new Budget(budget), 0);
+    }
+
+    private Map<Object, Object> applyToEntries(Map<?, ?> map, Budget budget, int depth) {
+
+        Map<Object, Object> result = new HashMap<Object, Object>(budget.limited ? 16 : map.size() * 4 / 3 + 1);
+
+        for(Map.Entry<?, ?> entry : map.entrySet()) {
+
+            if(budget.full) {
+                break;
+            }
+
+            Object key = entry.getKey();
+
+            if(key instanceof CharSequence && isSensitive((CharSequence) key)) {
+                result.put(key, mask);
+            }
+            else if(budget.takeKey(String.valueOf(key))) {
+                result.put(key, applyToValue(entry.getValue(), budget, depth));
+            }
+        }
+
+        return result;
+    }
+
+    private Object applyToValue(Object value, Budget budget, int depth) {
+
+        if(value == null) {
+            return null;
+        }
+
+        if(value instanceof Map && depth < MAX_DEPTH) {
+            return applyToEntries((Map<?, ?>) value, budget, depth + 1);
+        }
+
+        if(value instanceof char[] && budget.limited) {
+            return budget.take(new String((char[]) value), truncationMarker);
+        }
+
+        // collections and arrays of objects may hold maps with sensitive keys, primitive arrays only need walking
+        // to keep them within the budget
+        boolean walk = value instanceof Collection || value instanceof Object[] || (budget.limited && value.getClass().isArray());
+
+        if(walk && depth < MAX_DEPTH) {
+
+            List<Object> result = new ArrayList<Object>();
+            Iterator<?> elements = elements(value);
+
+            while (elements.hasNext()) {
+
+                if(budget.full) {
+
+                    if(truncationMarker != null) {
+                        result.add(truncationMarker);
+                    }
+
+                    break;
+                }
+
+                result.add(applyToValue(elements.next(), budget, depth + 1));
+            }
+
+            return result;
+        }
+
+        if(!budget.limited) {
+            return value;
+        }
+
+        // strings and scalars are kept if they fit, anything else is serialized by its string form
+        boolean scalar = value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum;
+
+        String text = value.toString();
+        String taken = budget.take(text, truncationMarker);
+        return scalar && taken == text ? value : taken;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Iterator<?> elements(final Object value) {
+
+        if(value instanceof Collection) {
+            return ((Collection<Object>) value).iterator();
+        }
+
+        return new Iterator<Object>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < Array.getLength(value);
+            }
+
+            @Override
+            public Object next() {
+                return Array.get(value, index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    // ----------------
+    // Body scanning
+    // ----------------
+
+    private void redactJson(String body, Output out) {
+
+        int i = 0, length = body.length();
+
+        while (i < length && !out.full) {
+
+            char c = body.charAt(i);
+
+            if(c != '"') {
+                out.append(c);
+                i++;
+                continue;
+            }
+
+            // string, walk the trie as we copy it in case this turns out to be a key
+            Node node = redacting ? keys : null;
+            int end = i + 1;
+
+            while (end < length && body.charAt(end) != '"') {
+
+                char ch = body.charAt(end);
+
+                if(ch == '\\') {
+
+                    int code = end + 5 < length && body.charAt(end + 1) == 'u' ? hex(body, end + 2, 4) : -1;
+
+                    if(code >= 0) {
+                        ch = (char) code;
+                        end += 5;
+                    }
+                    else {
+                        ch = end + 1 < length ? unescape(body.charAt(end + 1)) : ch;
+                        end++;
+                    }
+                }
+
+                if(node != null) {
+                    node = node.next(Character.toLowerCase(ch));
+                }
+
+                end++;
+            }
+
+            end = Math.min(end + 1, length);
+            out.append(body, i, end);
+            i = end;
+
+            if(node != null && node.terminal) {
+
+                int colon = skipWhitespace(body, i);
+
+                if(colon < length && body.charAt(colon) == ':') {
+                    int valueStart = skipWhitespace(body, colon + 1);
+                    out.append(body, i, valueStart);
+                    out.append('"').append(mask, 0, mask.length()).append('"');
+                    i = skipJsonValue(body, valueStart);
+                }
+            }
+        }
+    }
+
+    private void redactForm(String body, Output out) {
+
+        int i = 0, length = body.length();
+
+        while (i < length && !out.full) {
+
+            // key, up to '='
+            Node node = redacting ? keys : null;
+            int keyEnd = i;
+
+            while (keyEnd < length && body.charAt(keyEnd) != '=' && body.charAt(keyEnd) != '&') {
+
+                char ch = body.charAt(keyEnd);
+                int code = ch == '%' && keyEnd + 2 < length ? hex(body, keyEnd + 1, 2) : -1;
+
+                if(code >= 0) {
+                    ch = (char) code;
+                    keyEnd += 2;
+                }
+                else if(ch == '+') {
+                    ch = ' ';
+                }
+
+                if(node != null) {
+                    node = node.next(Character.toLowerCase(ch));
+                }
+
+                keyEnd++;
+            }
+
+            int valueEnd = body.indexOf('&', keyEnd);
+            valueEnd = valueEnd < 0 ? length : valueEnd;
+
+            if(node != null && node.terminal && keyEnd < length && body.charAt(keyEnd) == '=') {
+                out.append(body, i, keyEnd + 1).append(mask, 0, mask.length());
+            }
+            else {
+                out.append(body, i, valueEnd);
+            }
+
+            if(valueEnd < length) {
+                out.append('&');
+            }
+
+            i = valueEnd + 1;
+        }
+    }
+
+    private static int skipJsonValue(String body, int i) {
+
+        int length = body.length();
+
+        if(i >= length) {
+            return i;
+        }
+
+        char c = body.charAt(i);
+
+        if(c == '"') {
+            i++;
+            while (i < length && body.charAt(i) != '"') {
+                i += body.charAt(i) == '\\' ? 2 : 1;
+            }
+            return Math.min(i + 1, length);
+        }
+
+        if(c == '{' || c == '[') {
+
+            int depth = 0;
+            boolean inString = false;
+
+            for(; i < length; i++) {
+
+                char ch = body.charAt(i);
+
+                if(inString) {
+                    if(ch == '\\') {
+                        i++;
+                    }
+                    else if(ch == '"') {
+                        inString = false;
+                    }
+                }
+                else if(ch == '"') {
+                    inString = true;
+                }
+                else if(ch == '{' || ch == '[') {
+                    depth++;
+                }
+                else if((ch == '}' || ch == ']') && --depth == 0) {
+                    return i + 1;
+                }
+            }
+
+            return length;
+        }
+
+        while (i < length && ",}] \t\r\n".indexOf(body.charAt(i)) < 0) {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * @return the value of the hex digits, -1 if they aren't all hex digits.
+     */
+    private static int hex(String body, int start, int digits) {
+
+        int value = 0;
+
+        for(int i = start; i < start + digits; i++) {
+
+            int digit = Character.digit(body.charAt(i), 16);
+
+            if(digit < 0) {
+                return -1;
+            }
+
+            value = value * 16 + digit;
+        }
+
+        return value;
+    }
+
+    private static char unescape(char c) {
+
+        switch (c) {
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            default: return c;
+        }
+    }
+
+    private static int skipWhitespace(String body, int i) {
+
+        while (i < body.length() && Character.isWhitespace(body.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static boolean fits(String value, int budget) {
+
+        // quick check, a char is at most 3 UTF-8 bytes (surrogate pairs are 4 bytes for 2 chars)
+        if(budget < 0 || value.length() * 3 <= budget) {
+            return true;
+        }
+
+        if(value.length() > budget) {
+            return false;
+        }
+
+        return utf8Length(value) <= budget;
+    }
+
+    private static int utf8Length(String value) {
+
+        int bytes = 0;
+
+        for(int i = 0; i < value.length(); i++) {
+            bytes += utf8Length(value.charAt(i));
+        }
+
+        return bytes;
+    }
+
+    private static int utf8Length(char c) {
+        return c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+    }
+
+    // ----------------
+    // Inner classes
+    // ----------------
+
+    /**
+     * Bytes left of the budget of one field, shared by all of its keys and values.
+     */
+    private static final class Budget {
+
+        private final boolean limited;
+
+        private int remaining;
+
+        private boolean full;
+
+        private Budget(int bytes) {
+            this.limited = bytes >= 0;
+            this.remaining = bytes;
+        }
+
+        /**
+         * Charges the text, or as much of it as fits in which case the budget is used up.
+         * @return the text, or its start followed by the marker if it doesn't fit.
+         */
+        private String take(String text, String marker) {
+
+            if(!limited || charge(text)) {
+                return text;
+            }
+
+            Output out = new Output(remaining, Math.min(text.length(), remaining) + 16);
+            out.append(text, 0, text.length());
+            remaining -= out.bytes;
+            full = true;
+            return out.finish(marker);
+        }
+
+        /**
+         * Charges the key of an entry, keys aren't cut short.
+         * @return false if it doesn't fit, in which case the budget is used up and the entry left out.
+         */
+        private boolean takeKey(String key) {
+
+            if(!limited || charge(key)) {
+                return true;
+            }
+
+            full = true;
+            return false;
+        }
+
+        private boolean charge(String text) {
+
+            // a char is at least one UTF-8 byte, so the length is only computed for text which may fit
+            if(text.length() <= remaining) {
+
+                int bytes = utf8Length(text);
+
+                if(bytes <= remaining) {
+                    remaining -= bytes;
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Output which counts UTF-8 bytes and stops accepting characters once the budget is used.
+     */
+    private static final class Output {
+
+        private final StringBuilder builder;
+
+        private final int budget;
+
+        private int bytes;
+
+        private boolean full;
+
+        private Output(int budget, int capacity) {
+            this.budget = budget;
+            this.builder = new StringBuilder(capacity);
+        }
+
+        private Output append(char c) {
+
+            if(full) {
+                return this;
+            }
+
+            int size = utf8Length(c);
+
+            // don't split a surrogate pair
+            if(budget >= 0 && (bytes + size > budget || (Character.isHighSurrogate(c) && bytes + 4 > budget))) {
+                full = true;
+                return this;
+            }
+
+            bytes += size;
+            builder.append(c);
+            return this;
+        }
+
+        private Output append(CharSequence value, int start, int end) {
+
+            for(int i = start; i < end && !full; i++) {
+                append(value.charAt(i));
+            }
+
+            return this;
+        }
+
+        private String finish(String marker) {
+
+            if(full && marker != null) {
+                builder.append(marker);
+            }
+
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Trie node, children are kept in parallel arrays which are small for key names.
+     */
+    private static final class Node {
+
+        private char[] chars = new char[0];
+
+        private Node[] children = new Node[0];
+
+        private boolean terminal;
+
+        private Node next(char c) {
+
+            for(int i = 0; i < chars.length; i++) {
+                if(chars[i] == c) {
+                    return children[i];
+                }
+            }
+
+            return null;
+        }
+
+        private Node add(char c) {
+
+            Node child = next(c);
+
+            if(child == null) {
+                child = new Node();
+                chars = Arrays.copyOf(chars, chars.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                chars[chars.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+
+            return child;
+        }
+
+        private Node copy() {
+
+            Node copy = new Node();
+            copy.terminal = terminal;
+            copy.chars = chars.clone();
+            copy.children = new Node[children.length];
+
+            for(int i = 0; i < children.length; i++) {
+                copy.children[i] = children[i].copy();
+            }
+
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.shedhack.exception.core;
+
+/**
+ * Severity of a failure, see {@link ExceptionClassification}.
+ *
+ * @author imamchishty
+ */
+public enum Severity {
+
+    INFO,
+    WARNING,
+    ERROR,
+    CRITICAL
+}
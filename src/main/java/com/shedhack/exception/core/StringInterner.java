@@ -0,0 +1,101 @@
+package com.shedhack.exception.core;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Optional de-duplication of the low cardinality strings held by {@link ExceptionModel}s (application name, exception
+ * class, meta-data, path, HTTP status description and business codes), for applications which keep large numbers of
+ * models in memory. Messages aren't interned, they usually hold Ids or values and would only churn the table.
+ *
+ * The table has a fixed number of slots, each holding a weak reference to a string, so it can't grow or keep strings
+ * alive. It is lock free and lossy: a string replaces whatever was in its slot, so colliding strings are simply
+ * not shared. Unlike {@link String#intern()} nothing is added to the JVM's string table.
+ *
+ * Disabled by default, enable it with {@link #setDefault(StringInterner)}.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public final class StringInterner {
+
+    /**
+     * Interner which returns strings as they are.
+     */
+    public static final StringInterner NONE = new StringInterner(null);
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int MAX_LENGTH = 1024;
+
+    private static volatile StringInterner defaultInterner = NONE;
+
+    /**
+     * @return interner used by the builders.
+     */
+    public static StringInterner getDefault() {
+        return defaultInterner;
+    }
+
+    public static void setDefault(StringInterner interner) {
+        defaultInterner = interner == null ? NONE : interner;
+    }
+
+    public static StringInterner create() {
+        return create(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two.
+     */
+    public static StringInterner create(int capacity) {
+
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        int slots = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        return new StringInterner(new AtomicReferenceArray<WeakReference<String>>(slots));
+    }
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final AtomicReferenceArray<WeakReference<String>> table;
+
+    private final int mask;
+
+    private StringInterner(AtomicReferenceArray<WeakReference<String>> table) {
+        this.table = table;
+        this.mask = table == null ? 0 : table.length() - 1;
+    }
+
+    /**
+     * @return an equal string, shared if one has been seen before; long strings are returned as they are.
+     */
+    public String intern(String value) {
+
+        if(table == null || value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+
+        int hash = value.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+
+        WeakReference<String> reference = table.get(slot);
+        String existing = reference == null ? null : reference.get();
+
+        if(existing != null && existing.equals(value)) {
+            return existing;
+        }
+
+        table.lazySet(slot, new WeakReference<String>(value));
+        return value;
+    }
+
+    public boolean isEnabled() {
+        return table != null;
+    }
+}
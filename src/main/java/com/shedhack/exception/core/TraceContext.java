@@ -0,0 +1,329 @@
+package com.shedhack.exception.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>
+ * Immutable request context (trace Id, span Id, session Id, path and locale) which {@link ExceptionModel.Builder} and
+ * {@link BusinessException.Builder} pick up automatically, so that they don't have to be passed down by hand.
+ *
+ * {@link #run(TraceContext, Runnable)} and {@link #call(TraceContext, Callable)} bind the context for the duration
+ * of a task. On JVMs which have <code>java.lang.ScopedValue</code> it is used, which is cheap to bind and safe
+ * with any number of virtual threads; otherwise a {@link ThreadLocal} is used. For code which can't wrap
+ * the request in a task (e.g. servlet filters) {@link #bind(TraceContext)} binds the context to the current thread
+ * until the returned {@link Scope} is closed.
+ *
+ * The two can be nested in any order, the innermost binding wins (binding null clears the context). The context is
+ * not inherited by threads started while it is bound, so that pooled threads don't keep the context of the request
+ * which happened to start them; tasks handed to other threads should be wrapped in {@link #run(TraceContext, Runnable)}.
+ *
+ * <pre>
+ * TraceContext.run(TraceContext.of(traceId, spanId).withPath(request.getRequestURI()), task);
+ * </pre>
+ * </p>
+ *
+ * @author imamchishty
+ */
+public final class TraceContext {
+
+    // innermost open scope of bind(), takes precedence over the scoped value
+    private static final ThreadLocal<Scope> BOUND = new ThreadLocal<Scope>();
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final String traceId, spanId, sessionId, path;
+
+    private final Locale locale;
+
+    private TraceContext(String traceId, String spanId, String sessionId, String path, Locale locale) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sessionId = sessionId;
+        this.path = path;
+        this.locale = locale;
+    }
+
+    public static TraceContext of(String traceId, String spanId) {
+        return new TraceContext(traceId, spanId, null, null, null);
+    }
+
+    public TraceContext withTraceId(String traceId) {
+        return new TraceContext(traceId, spanId, sessionId, path, locale);
+    }
+
+    public TraceContext withSpanId(String spanId) {
+        return new TraceContext(traceId, spanId, sessionId, path, locale);
+    }
+
+    public TraceContext withSessionId(String sessionId) {
+        return new TraceContext(traceId, spanId, sessionId, path, locale);
+    }
+
+    public TraceContext withPath(String path) {
+        return new TraceContext(traceId, spanId, sessionId, path, locale);
+    }
+
+    /**
+     * @param locale locale of the request, used for the business code descriptions.
+     */
+    public TraceContext withLocale(Locale locale) {
+        return new TraceContext(traceId, spanId, sessionId, path, locale);
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    // ----------------
+    // Binding
+    // ----------------
+
+    /**
+     * @return the context bound to the current thread, null if there isn't one.
+     */
+    public static TraceContext current() {
+
+        Scope scope = BOUND.get();
+
+        if(scope != null) {
+            return scope.context;
+        }
+
+        return Scoped.AVAILABLE ? Scoped.get() : null;
+    }
+
+    /**
+     * Runs the task with the context bound.
+     */
+    public static void run(TraceContext context, Runnable task) {
+
+        if(Scoped.AVAILABLE) {
+            runScoped(context, task);
+            return;
+        }
+
+        Scope scope = bind(context);
+
+        try {
+            task.run();
+        }
+        finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Calls the task with the context bound.
+     */
+    public static <T> T call(TraceContext context, final Callable<T> task) throws Exception {
+
+        if(Scoped.AVAILABLE) {
+
+            final Object[] result = new Object[1];
+            final Exception[] failure = new Exception[1];
+
+            runScoped(context, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result[0] = task.call();
+                    }
+                    catch (Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+
+            if(failure[0] != null) {
+                throw failure[0];
+            }
+
+            @SuppressWarnings("unchecked")
+            T value = (T) result[0];
+            return value;
+        }
+
+        Scope scope = bind(context);
+
+        try {
+            return task.call();
+        }
+        finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Binds the context to the current thread until the scope is closed, at which point the previous context is
+     * restored. Scopes must be closed in the reverse order to which they were opened.
+     */
+    public static Scope bind(TraceContext context) {
+
+        Scope scope = new Scope(BOUND.get(), context);
+        BOUND.set(scope);
+        return scope;
+    }
+
+    /**
+     * Runs the task with the scoped value bound, scopes opened by {@link #bind(TraceContext)} around it are hidden
+     * for the duration of the task so that the scoped value is the innermost binding.
+     */
+    private static void runScoped(TraceContext context, Runnable task) {
+
+        Scope open = BOUND.get();
+        BOUND.remove();
+
+        try {
+            Scoped.run(context, task);
+        }
+        finally {
+            if(open != null) {
+                BOUND.set(open);
+            }
+        }
+    }
+
+    /**
+     * Restores the previous context when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope previous;
+
+        private final TraceContext context;
+
+        private Scope(Scope previous, TraceContext context) {
+            this.previous = previous;
+            this.context = context;
+        }
+
+        @Override
+        public void close() {
+            if(previous == null) {
+                BOUND.remove();
+            }
+            else {
+                BOUND.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{\"TraceContext\":{"
+                + "\"traceId\":\"" + traceId + "\""
+                + ", \"spanId\":\"" + spanId + "\""
+                + ", \"sessionId\":\"" + sessionId + "\""
+                + ", \"path\":\"" + path + "\""
+                + ", \"locale\":\"" + locale + "\""
+                + "}}";
+    }
+
+    /**
+     * Reflective access to <code>java.lang.ScopedValue</code>, resolved once. Unavailable on older JVMs, and on JVMs
+     * where it is still a preview feature which hasn't been enabled.
+     */
+    private static final class Scoped {
+
+        private static final Object VALUE;
+
+        private static final MethodHandle WHERE, RUN, IS_BOUND, GET;
+
+        private static final boolean AVAILABLE;
+
+        static {
+
+            Object value = null;
+            MethodHandle where = null, run = null, isBound = null, get = null;
+            boolean available = false;
+
+            try {
+                Class<?> type = Class.forName("java.lang.ScopedValue");
+                Class<?> carrier = Class.forName("java.lang.ScopedValue$Carrier");
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+                value = lookup.findStatic(type, "newInstance", MethodType.methodType(type)).invoke();
+                where = lookup.findStatic(type, "where", MethodType.methodType(carrier, type, Object.class));
+                run = lookup.findVirtual(carrier, "run", MethodType.methodType(void.class, Runnable.class));
+                isBound = lookup.findVirtual(type, "isBound", MethodType.methodType(boolean.class));
+                get = lookup.findVirtual(type, "get", MethodType.methodType(Object.class));
+
+                // fails if the feature is in preview and hasn't been enabled
+                final boolean[] bound = new boolean[1];
+                final MethodHandle check = isBound;
+                final Object scopedValue = value;
+
+                run.invoke(where.invoke(value, new Object()), new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            bound[0] = (Boolean) check.invoke(scopedValue);
+                        }
+                        catch (Throwable e) {
+                            bound[0] = false;
+                        }
+                    }
+                });
+
+                available = bound[0];
+            }
+            catch (Throwable e) {
+                available = false;
+            }
+
+            VALUE = value;
+            WHERE = where;
+            RUN = run;
+            IS_BOUND = isBound;
+            GET = get;
+            AVAILABLE = available;
+        }
+
+        static TraceContext get() {
+            try {
+                return (Boolean) IS_BOUND.invoke(VALUE) ? (TraceContext) GET.invoke(VALUE) : null;
+            }
+            catch (Throwable e) {
+                throw new IllegalStateException("Unable to read scoped trace context", e);
+            }
+        }
+
+        static void run(TraceContext context, Runnable task) {
+
+            try {
+                RUN.invoke(WHERE.invoke(VALUE, context), task);
+            }
+            catch (RuntimeException e) {
+                throw e;
+            }
+            catch (Error e) {
+                throw e;
+            }
+            catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
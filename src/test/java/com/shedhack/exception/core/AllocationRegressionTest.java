@@ -0,0 +1,181 @@
+package com.shedhack.exception.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Guards the error path against allocation regressions. The bounds are the bytes allocated per operation, measured
+ * on the current thread, with generous headroom so that they only fail when a change adds real garbage.
+ */
+public class AllocationRegressionTest {
+
+    private static final int WARMUP = 5000;
+
+    private static final int ITERATIONS = 2000;
+
+    // prevents the results from being optimised away
+    private static volatile Object sink;
+
+    private final IllegalStateException cause = new IllegalStateException("Downstream failure");
+
+    private BusinessException businessException;
+
+    private ExceptionModel model;
+
+    @Before
+    public void setup() {
+
+        assumeTrue(ExceptionStormHarness.allocatedBytes() >= 0);
+
+        businessException = BusinessException.builder("Account locked", cause)
+                .withBusinessCode(FooBusinessCode.FOO_01)
+                .withParam("user", "imam")
+                .build();
+
+        model = new ExceptionModel.Builder("foo", businessException).withHttpCode(500, "Internal Server Error").build();
+    }
+
+    @Test
+    public void should_bound_business_exception_allocation() {
+
+        long bytes = measure(new Operation() {
+            @Override
+            public Object run() {
+                return BusinessException.builder("Account locked", cause)
+                        .withBusinessCode(FooBusinessCode.FOO_01)
+                        .withParam("user", "imam")
+                        .build();
+            }
+        });
+
+        assertTrue("business exception: " + bytes + " bytes", bytes < 4 * 1024);
+    }
+
+    @Test
+    public void should_bound_plain_model_allocation() {
+
+        long bytes = measure(new Operation() {
+            @Override
+            public Object run() {
+                return new ExceptionModel.Builder("foo", cause).withHttpCode(500, "Internal Server Error").build();
+            }
+        });
+
+        assertTrue("model from plain exception: " + bytes + " bytes", bytes < 4 * 1024);
+    }
+
+    @Test
+    public void should_bound_business_model_allocation() {
+
+        long bytes = measure(new Operation() {
+            @Override
+            public Object run() {
+                return new ExceptionModel.Builder("foo", businessException).withHttpCode(500, "Internal Server Error").build();
+            }
+        });
+
+        assertTrue("model from business exception: " + bytes + " bytes", bytes < 4 * 1024);
+    }
+
+    @Test
+    public void should_bound_serialization_allocation() {
+
+        final ExceptionModelSerializer serializer = new DefaultExceptionModelSerializer();
+
+        long bytes = measure(new Operation() {
+            @Override
+            public Object run() {
+                return serializer.serialize(model);
+            }
+        });
+
+        assertTrue("serialization: " + bytes + " bytes", bytes < 8 * 1024);
+    }
+
+    @Test
+    public void should_bound_template_allocation() {
+
+        final ExceptionModelTemplate template = ExceptionModelTemplate.of("foo", FooBusinessCode.FOO_01, 500, "Internal Server Error");
+        final Date date = new Date();
+
+        long bytes = measure(new Operation() {
+            @Override
+            public Object run() {
+                return template.render("d99306bc-4b04-4a34-b7e7-f5554383f570", date, "trace", "span", "/api/v1/users");
+            }
+        });
+
+        assertTrue("template rendering: " + bytes + " bytes", bytes < 1024);
+    }
+
+    @Test
+    public void should_render_template_with_less_garbage_than_serialization() throws Exception {
+
+        // Arrange
+        final ExceptionModelSerializer serializer = new DefaultExceptionModelSerializer();
+        final ExceptionModelTemplate template = ExceptionModelTemplate.of("foo", FooBusinessCode.FOO_01, 500, "Internal Server Error");
+        final ExceptionModel flyweight = new ExceptionModel.Builder("foo", FlyweightBusinessExceptions.of(FooBusinessCode.FOO_01))
+                .withHttpCode(500, "Internal Server Error")
+                .withTraceId("trace").withSpanId("span").withPath("/api/v1/users")
+                .build();
+
+        // Act
+        long serialization = measure(new Operation() {
+            @Override
+            public Object run() {
+                return serializer.serialize(flyweight).getBytes(StandardCharsets.UTF_8);
+            }
+        });
+
+        long rendering = measure(new Operation() {
+            @Override
+            public Object run() {
+                return template.render(flyweight.getExceptionId(), flyweight.getDateTime(), "trace", "span", "/api/v1/users");
+            }
+        });
+
+        // Assert
+        assertEquals(serializer.serialize(flyweight), new String(template.render(flyweight.getExceptionId(),
+                flyweight.getDateTime(), "trace", "span", "/api/v1/users"), "UTF-8"));
+        assertTrue("template " + rendering + " bytes, serialization " + serialization + " bytes", rendering * 2 < serialization);
+    }
+
+    @Test
+    public void should_report_exception_storm() throws Exception {
+
+        ExceptionStormHarness.Report report = new ExceptionStormHarness(2, 500).run();
+
+        assertTrue(report.toString(), report.getOperations() > 0);
+        assertTrue(report.toString(), report.getBytesPerOperation() > 0);
+        assertTrue(report.toString(), report.getBytesPerOperation() < 64 * 1024);
+    }
+
+    // ----------------
+    // Helpers
+    // ----------------
+
+    private static long measure(Operation operation) {
+
+        for(int i = 0; i < WARMUP; i++) {
+            sink = operation.run();
+        }
+
+        long before = ExceptionStormHarness.allocatedBytes();
+
+        for(int i = 0; i < ITERATIONS; i++) {
+            sink = operation.run();
+        }
+
+        return (ExceptionStormHarness.allocatedBytes() - before) / ITERATIONS;
+    }
+
+    private interface Operation {
+        Object run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.shedhack.exception.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the localized business code descriptions, see FooBusinessCode_fr.properties and FooBusinessCode_fr_CA.properties.
+ */
+public class BusinessCodeDescriptionsTest {
+
+    private static final Locale FRENCH = Locale.FRENCH;
+
+    private static final Locale CANADIAN_FRENCH = Locale.CANADA_FRENCH;
+
+    @After
+    public void reset() {
+        BusinessCodeDescriptions.clear();
+    }
+
+    @Test
+    public void should_describe_codes_in_locale() {
+
+        // Arrange, Act & Assert
+        assertEquals("Utilisateur introuvable.", FooBusinessCode.FOO_01.getDescription(FRENCH));
+        assertEquals("Le compte de l'utilisateur est bloqué.", FooBusinessCode.FOO_02.getDescription(FRENCH));
+        assertEquals(FooBusinessCode.FOO_03.getDescription(), FooBusinessCode.FOO_03.getDescription(FRENCH));
+    }
+
+    @Test
+    public void should_fall_back_through_bundle_chain() {
+
+        assertEquals("Usager introuvable.", FooBusinessCode.FOO_01.getDescription(CANADIAN_FRENCH));
+        assertEquals("Le compte de l'utilisateur est bloqué.", FooBusinessCode.FOO_02.getDescription(CANADIAN_FRENCH));
+        assertEquals(FooBusinessCode.FOO_04.getDescription(), FooBusinessCode.FOO_04.getDescription(CANADIAN_FRENCH));
+    }
+
+    @Test
+    public void should_use_default_description_without_bundle() {
+
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(FRENCH);
+
+        try {
+            // the JVM's default locale isn't part of the fallback chain
+            assertEquals(FooBusinessCode.FOO_01.getDescription(), FooBusinessCode.FOO_01.getDescription(Locale.GERMAN));
+            assertEquals(FooBusinessCode.FOO_01.getDescription(), FooBusinessCode.FOO_01.getDescription(null));
+        }
+        finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    public void should_reuse_loaded_descriptions() {
+        assertSame(FooBusinessCode.FOO_01.getDescription(FRENCH), FooBusinessCode.FOO_01.getDescription(FRENCH));
+    }
+
+    @Test
+    public void should_describe_codes_which_are_not_enums() {
+
+        BusinessCode code = new BusinessCode() {
+            @Override
+            public String getCode() {
+                return "BAR_01";
+            }
+
+            @Override
+            public String getDescription() {
+                return "Bar";
+            }
+        };
+
+        assertEquals("Bar", code.getDescription(FRENCH));
+    }
+
+    @Test
+    public void should_localize_model_codes() throws Exception {
+
+        // Arrange
+        BusinessException exception = BusinessException.builder("failed")
+                .withBusinessCode(FooBusinessCode.FOO_01)
+                .withBusinessCode(FooBusinessCode.FOO_03)
+                .build();
+
+        // Act
+        ExceptionModel model = new ExceptionModel.Builder("foo", exception).withLocale(FRENCH)
+                .withBusinessCode(FooBusinessCode.FOO_02)
+                .build();
+
+        ExceptionModel fromContext = TraceContext.call(TraceContext.of("trace", "span").withLocale(CANADIAN_FRENCH), new Callable<ExceptionModel>() {
+            @Override
+            public ExceptionModel call() {
+                return new ExceptionModel.Builder("foo", FlyweightBusinessExceptions.of(FooBusinessCode.FOO_01)).build();
+            }
+        });
+
+        ExceptionModel reset = new ExceptionModel.Builder("foo", exception).withLocale(FRENCH).withLocale(null).build();
+
+        // Assert
+        assertEquals("Utilisateur introuvable.", model.getBusinessCodes().get("FOO_01"));
+        assertEquals("Le compte de l'utilisateur est bloqué.", model.getBusinessCodes().get("FOO_02"));
+        assertEquals(FooBusinessCode.FOO_03.getDescription(), model.getBusinessCodes().get("FOO_03"));
+        assertEquals("Usager introuvable.", fromContext.getBusinessCodes().get("FOO_01"));
+        assertEquals(FooBusinessCode.FOO_01.getDescription(), reset.getBusinessCodes().get("FOO_01"));
+    }
+}
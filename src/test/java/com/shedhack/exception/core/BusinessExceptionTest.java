@@ -2,9 +2,15 @@ package com.shedhack.exception.core;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  *
@@ -32,4 +38,43 @@ public class BusinessExceptionTest {
         
         // something
     }
+
+    @Test
+    public void should_render_message_template_lazily() {
+
+        // Arrange
+        BusinessException exception = BusinessException.templated("User {user} not found in {tenant}, {missing}")
+                .withBusinessCode(FooBusinessCode.FOO_01)
+                .withParam("user", "imam")
+                .withParam("tenant", 42)
+                .build();
+
+        // Act
+        String message = exception.getMessage();
+
+        // Assert
+        assertEquals("User imam not found in 42, {missing}", message);
+        assertSame(message, exception.getMessage());
+        assertSame(exception.getMessageTemplate(), MessageTemplate.compile("User {user} not found in {tenant}, {missing}"));
+        assertEquals(message, new ExceptionModel.Builder("foo", exception).build().getMessage());
+    }
+
+    @Test
+    public void should_serialize_templated_exception() throws Exception {
+
+        // Arrange
+        BusinessException exception = BusinessException.templated("User {user} not found").withParam("user", "bob").build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        // Act
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(exception);
+        out.close();
+        BusinessException read = (BusinessException) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        // Assert
+        assertEquals("User bob not found", read.getMessage());
+        assertSame(exception.getMessageTemplate(), read.getMessageTemplate());
+        assertEquals(exception.getExceptionId(), read.getExceptionId());
+    }
 }
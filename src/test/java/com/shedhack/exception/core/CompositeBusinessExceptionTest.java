@@ -0,0 +1,171 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CompositeBusinessException}.
+ */
+public class CompositeBusinessExceptionTest {
+
+    @Test
+    public void should_aggregate_failures_with_correlation_ids() {
+
+        // Arrange
+        String uuid = "d99306bc-4b04-4a34-b7e7-f5554383f570";
+        BusinessException first = BusinessException.builder("first").withBusinessCode(FooBusinessCode.FOO_01)
+                .withBusinessCode(FooBusinessCode.FOO_02).withParam("user", "imam").build();
+        BusinessException second = BusinessException.builder("second").withBusinessCode(FooBusinessCode.FOO_02)
+                .withParam("user", "john").withParam("missing", null).build();
+
+        CompositeBusinessException.Builder builder = CompositeBusinessException.composite("batch failed");
+
+        // Act
+        String firstId = builder.add(first);
+        String secondId = builder.add(second);
+        String thirdId = builder.add(new IllegalStateException("downstream " + uuid));
+        String fourthId = builder.add(new IllegalArgumentException("bad"));
+        CompositeBusinessException exception = builder.build();
+
+        // Assert
+        assertEquals(first.getExceptionId(), firstId);
+        assertEquals(second.getExceptionId(), secondId);
+        assertEquals(uuid, thirdId);
+        assertNotNull(fourthId);
+        assertNotNull(exception.getExceptionId());
+        assertEquals("batch failed", exception.getMessage());
+        assertEquals(Arrays.<BusinessCode>asList(FooBusinessCode.FOO_01, FooBusinessCode.FOO_02), exception.getBusinessCodes());
+        assertEquals("imam", exception.getParams().get("user"));
+        assertTrue(exception.getParams().containsKey("missing"));
+        assertNull(exception.getParams().get("missing"));
+        assertEquals(4, exception.getFailures().size());
+        assertEquals(4, exception.getSuppressed().length);
+        assertSame(first, exception.getFailures().get(0).getFailure());
+        assertEquals(fourthId, exception.getFailures().get(3).getCorrelationId());
+    }
+
+    @Test
+    public void should_add_chain_entry_per_failure() {
+
+        // Arrange
+        CompositeBusinessException.Builder builder = CompositeBusinessException.composite(null);
+        String firstId = builder.add(new IllegalStateException("one"));
+        String secondId = builder.add(BusinessException.builder("two").build());
+
+        // Act
+        ExceptionModel model = new ExceptionModel.Builder("foo", builder.build()).build();
+
+        // Assert
+        assertEquals("2 failure(s)", model.getMessage());
+        assertEquals(3, model.getExceptionChain().size());
+        assertEquals(model.getExceptionId(), model.getExceptionChain().get(0).getCorrelationId());
+        assertEquals(firstId, model.getExceptionChain().get(1).getCorrelationId());
+        assertEquals("one", model.getExceptionChain().get(1).getMessage());
+        assertEquals(secondId, model.getExceptionChain().get(2).getCorrelationId());
+        assertEquals("two", model.getExceptionChain().get(2).getMessage());
+    }
+
+    @Test
+    public void should_collect_failures_from_many_threads() throws Exception {
+
+        // Arrange
+        final CompositeBusinessException.Builder builder = CompositeBusinessException.composite("parallel");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+
+        // Act
+        try {
+            for(int i = 0; i < 1000; i++) {
+                final int task = i;
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return builder.add(BusinessException.builder("task " + task)
+                                .withBusinessCode(FooBusinessCode.values()[task % 4])
+                                .withParam("task-" + task, task).build());
+                    }
+                }));
+            }
+
+            Set<String> ids = new HashSet<String>();
+
+            for(Future<String> future : futures) {
+                ids.add(future.get());
+            }
+
+            CompositeBusinessException exception = builder.build();
+
+            // Assert
+            assertEquals(1000, ids.size());
+            assertEquals(1000, builder.size());
+            assertEquals(1000, exception.getFailures().size());
+            assertEquals(1000, exception.getParams().size());
+            assertEquals(4, exception.getBusinessCodes().size());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_be_serializable() throws Exception {
+
+        // Arrange
+        CompositeBusinessException.Builder builder = CompositeBusinessException.composite("batch failed");
+        String id = builder.add(new IllegalStateException("one"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        // Act
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(builder.build());
+        out.close();
+        CompositeBusinessException read = (CompositeBusinessException) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        // Assert
+        assertEquals(id, read.getFailures().get(0).getCorrelationId());
+        assertEquals("one", read.getFailures().get(0).getFailure().getMessage());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_null_failure() {
+        CompositeBusinessException.composite("failed").add(null);
+    }
+
+    @Test
+    public void should_take_http_code_from_classifier() {
+
+        // Arrange
+        ExceptionClassifier.getDefault().register(FooBusinessCode.FOO_01, ExceptionClassification.of(404, false, Severity.INFO));
+
+        try {
+            CompositeBusinessException.Builder builder = CompositeBusinessException.composite("lookups failed");
+            builder.add(BusinessException.builder("not found").withBusinessCode(FooBusinessCode.FOO_01).build());
+
+            // Act
+            CompositeBusinessException classified = builder.build();
+            CompositeBusinessException explicit = builder.withHttpCode(410).build();
+
+            // Assert
+            assertEquals(Integer.valueOf(404), classified.getHttpCode());
+            assertEquals(Integer.valueOf(410), explicit.getHttpCode());
+        }
+        finally {
+            ExceptionClassifier.getDefault().clear();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the built-in serializer writes the same JSON as Gson.
+ */
+public class DefaultExceptionModelSerializerTest {
+
+    private final ExceptionModelSerializer builtIn = new DefaultExceptionModelSerializer();
+
+    private final ExceptionModelSerializer gson = new GsonExceptionModelSerializer();
+
+    @Test
+    public void should_match_gson_for_business_exception_model() {
+
+        // Arrange
+        BusinessException cause = BusinessException.builder("Account locked <script>&'=\"\\ \t\n", new IllegalArgumentException("é 😀 d99306bc-4b04-4a34-b7e7-f5554383f570"))
+                .withBusinessCode(FooBusinessCode.FOO_03).build();
+
+        ExceptionModel model = new ExceptionModel.Builder("foo", BusinessException.builder("security", cause)
+                .withBusinessCode(FooBusinessCode.FOO_04)
+                .withBusinessCode(FooBusinessCode.FOO_01)
+                .withParam("user", "imam")
+                .withParam("age", 42)
+                .withParam("ratio", 1.5d)
+                .withParam("amount", new BigDecimal("10.50"))
+                .withParam("flag", true)
+                .withParam("missing", null)
+                .withParam("code", FooBusinessCode.FOO_02)
+                .withParam("list", Arrays.asList("a", null, 3L))
+                .withParam("array", new int[]{1, 2})
+                .withParam("nested", Collections.singletonMap("k", Collections.singletonMap(7, 'c')))
+                .withParam("object", new Account("id-1", 3, new Owner("John")))
+                .withParam("anonymous", new Object() { })
+                .withParam("uuid", UUID.fromString("d99306bc-4b04-4a34-b7e7-f5554383f570"))
+                .build())
+                .withHttpCode(500, "desc")
+                .withPath("/api/v1/resource")
+                .withSessionId("abcd1234")
+                .withContext("thread", "main")
+                .withPostBody("{\"a\":1}")
+                .withRetryable(true)
+                .withSeverity(Severity.ERROR)
+                .build();
+
+        // Act & Assert
+        assertEquals(gson.serialize(model), builtIn.serialize(model));
+    }
+
+    @Test
+    public void should_match_gson_for_minimal_models() {
+
+        ExceptionModel empty = new ExceptionModel();
+        ExceptionModel plain = new ExceptionModel.Builder("foo", new IllegalStateException()).build();
+        plain.setParams(null);
+        plain.setExceptionChain(Arrays.asList(new ExceptionChainModel(null, null), null));
+
+        assertEquals(gson.serialize(empty), builtIn.serialize(empty));
+        assertEquals(gson.serialize(plain), builtIn.serialize(plain));
+    }
+
+    @Test
+    public void should_use_discovered_serializer_for_to_string() {
+
+        ExceptionModel model = new ExceptionModel.Builder("foo", new IllegalStateException("x")).build();
+
+        assertTrue(ExceptionModelSerializers.get() instanceof GsonExceptionModelSerializer);
+        assertEquals(gson.serialize(model), model.toString());
+
+        ExceptionModelSerializers.set(builtIn);
+
+        try {
+            assertSame(builtIn, ExceptionModelSerializers.get());
+            assertEquals(gson.serialize(model), model.toString());
+        }
+        finally {
+            ExceptionModelSerializers.set(null);
+        }
+    }
+
+    static class Base {
+        private String id;
+        private transient String ignored = "ignored";
+        private static String alsoIgnored = "ignored";
+
+        Base(String id) {
+            this.id = id;
+        }
+    }
+
+    static class Account extends Base {
+        private Integer count;
+        private Owner owner;
+        private Owner none;
+
+        Account(String id, Integer count, Owner owner) {
+            super(id);
+            this.count = count;
+            this.owner = owner;
+        }
+    }
+
+    class Owner {
+        private String name;
+
+        Owner(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the memoized exception chains.
+ */
+public class ExceptionChainsTest {
+
+    @Test
+    public void should_reuse_chain_of_wrapped_exception() {
+
+        // Arrange
+        IllegalArgumentException root = new IllegalArgumentException("root d99306bc-4b04-4a34-b7e7-f5554383f570");
+        BusinessException client = BusinessException.builder("client", root).build();
+        List<ExceptionChainModel> first = new ExceptionModel.Builder("foo", client).build().getExceptionChain();
+
+        // Act
+        BusinessException service = BusinessException.builder("service", client).build();
+        List<ExceptionChainModel> second = new ExceptionModel.Builder("foo", service).build().getExceptionChain();
+
+        // Assert
+        assertEquals(3, second.size());
+        assertEquals(service.getExceptionId(), second.get(0).getCorrelationId());
+        assertEquals(first.get(0), second.get(1));
+        assertEquals(first.get(1), second.get(2));
+        assertEquals("d99306bc-4b04-4a34-b7e7-f5554383f570", second.get(2).getCorrelationId());
+    }
+
+    @Test
+    public void should_cache_chain_of_foreign_throwables() {
+
+        IllegalStateException exception = new IllegalStateException("outer", new IllegalArgumentException("inner"));
+
+        List<ExceptionChainModel> first = new ExceptionModel.Builder("foo", exception).build().getExceptionChain();
+        List<ExceptionChainModel> second = new ExceptionModel.Builder("foo", exception).build().getExceptionChain();
+
+        assertNotSame(first, second);
+        assertEquals(2, second.size());
+        assertEquals(first.get(0), second.get(0));
+        assertEquals(first.get(1), second.get(1));
+    }
+
+    @Test
+    public void should_rebuild_chain_when_id_changes() {
+
+        BusinessException exception = BusinessException.builder("failed").build();
+        new ExceptionModel.Builder("foo", exception).build();
+
+        exception.setExceptionId("changed");
+        List<ExceptionChainModel> chain = new ExceptionModel.Builder("foo", exception).build().getExceptionChain();
+
+        assertEquals("changed", chain.get(0).getCorrelationId());
+    }
+
+    @Test
+    public void should_not_share_head_of_flyweight_exceptions() {
+
+        BusinessException flyweight = FlyweightBusinessExceptions.of(FooBusinessCode.FOO_02);
+
+        ExceptionModel first = new ExceptionModel.Builder("foo", flyweight).build();
+        ExceptionModel second = new ExceptionModel.Builder("foo", flyweight).build();
+
+        assertEquals(first.getExceptionId(), first.getExceptionChain().get(0).getCorrelationId());
+        assertEquals(second.getExceptionId(), second.getExceptionChain().get(0).getCorrelationId());
+        assertNotEquals(first.getExceptionId(), second.getExceptionId());
+        assertNull(ExceptionChains.chain(flyweight)[0].getCorrelationId());
+    }
+
+    @Test
+    public void should_return_modifiable_copies() {
+
+        BusinessException exception = BusinessException.builder("failed").build();
+        List<ExceptionChainModel> chain = ExceptionChains.find(exception);
+
+        chain.add(new ExceptionChainModel("extra", "extra"));
+
+        assertEquals(1, ExceptionChains.find(exception).size());
+    }
+
+    @Test
+    public void should_not_share_entries_between_models() {
+
+        // Arrange
+        BusinessException exception = BusinessException.builder("failed", new IllegalStateException("cause")).build();
+        ExceptionModel first = new ExceptionModel.Builder("foo", exception).build();
+
+        // Act
+        first.getExceptionChain().get(0).setMessage("MUTATED");
+        first.getExceptionChain().get(1).setMessage("MUTATED");
+        ExceptionModel second = new ExceptionModel.Builder("foo", exception).build();
+
+        // Assert
+        assertEquals("failed", second.getExceptionChain().get(0).getMessage());
+        assertEquals("cause", second.getExceptionChain().get(1).getMessage());
+    }
+
+    @Test
+    public void should_rebuild_chain_when_params_change() {
+
+        // Arrange
+        BusinessException.Builder builder = BusinessException.builder("failed")
+                .withMessageTemplate("User {user} not found")
+                .withParam("user", "alice");
+        BusinessException exception = builder.build();
+        new ExceptionModel.Builder("foo", exception).build();
+
+        // Act
+        builder.withParam("user", "bob");
+        List<ExceptionChainModel> chain = new ExceptionModel.Builder("foo", exception).build().getExceptionChain();
+
+        // Assert
+        assertEquals("User bob not found", chain.get(0).getMessage());
+    }
+
+    @Test
+    public void should_report_changes_to_wrapped_causes() {
+
+        // Arrange
+        BusinessException cause = BusinessException.builder("failed").build();
+        IllegalStateException wrapper = new IllegalStateException("wrapper", cause);
+        new ExceptionModel.Builder("foo", wrapper).build();
+
+        // Act
+        cause.setExceptionId("changed");
+        List<ExceptionChainModel> chain = new ExceptionModel.Builder("foo", wrapper).build().getExceptionChain();
+
+        // Assert
+        assertEquals(2, chain.size());
+        assertEquals("changed", chain.get(1).getCorrelationId());
+    }
+}
@@ -0,0 +1,146 @@
+package com.shedhack.exception.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the classification of exception chains.
+ */
+public class ExceptionClassifierTest {
+
+    private final ExceptionClassifier classifier = ExceptionClassifier.getDefault();
+
+    @Before
+    public void setUp() {
+        classifier.register(IOException.class, ExceptionClassification.of(503, true, Severity.WARNING))
+                .register(IllegalArgumentException.class, ExceptionClassification.of(400, false, Severity.INFO))
+                .register(FooBusinessCode.FOO_01, ExceptionClassification.of(404, false, Severity.INFO));
+    }
+
+    @After
+    public void tearDown() {
+        classifier.clear();
+    }
+
+    @Test
+    public void should_classify_by_nearest_super_class() {
+
+        ExceptionClassification classification = classifier.classify(SocketTimeoutException.class);
+
+        assertEquals(503, classification.getHttpStatusCode());
+        assertTrue(classification.isRetryable());
+        assertNull(classifier.classify(IllegalStateException.class));
+    }
+
+    @Test
+    public void should_classify_chain_from_outermost_classified_exception() {
+
+        // Arrange
+        Exception exception = new IllegalStateException("wrapper", new RuntimeException(new SocketTimeoutException("timeout")));
+
+        // Act
+        ExceptionClassification classification = classifier.classify(exception);
+
+        // Assert
+        assertEquals(ExceptionClassification.of(503, true, Severity.WARNING), classification);
+    }
+
+    @Test
+    public void should_prefer_business_codes_and_explicit_http_code() {
+
+        BusinessException byCode = BusinessException.builder("not found", new SocketTimeoutException())
+                .withBusinessCode(FooBusinessCode.FOO_01).build();
+        BusinessException explicit = BusinessException.builder("gone").withBusinessCode(FooBusinessCode.FOO_01)
+                .withHttpCode(410).build();
+
+        assertEquals(Integer.valueOf(404), byCode.getHttpCode());
+        assertEquals(404, classifier.classify(byCode).getHttpStatusCode());
+        assertEquals(410, classifier.classify(explicit).getHttpStatusCode());
+        assertEquals(Severity.INFO, classifier.classify(explicit).getSeverity());
+    }
+
+    @Test
+    public void should_apply_classification_to_models() {
+
+        ExceptionModel fromBusiness = new ExceptionModel.Builder("foo",
+                BusinessException.builder("failed", new SocketTimeoutException()).withHttpCode(502).build()).build();
+        ExceptionModel fromPlain = new ExceptionModel.Builder("foo", new IllegalArgumentException("bad")).build();
+        ExceptionModel unclassified = new ExceptionModel.Builder("foo", new IllegalStateException("bad")).build();
+
+        assertEquals(502, fromBusiness.getHttpStatusCode());
+        assertEquals(Boolean.TRUE, fromBusiness.getRetryable());
+        assertEquals("WARNING", fromBusiness.getSeverity());
+        assertEquals(400, fromPlain.getHttpStatusCode());
+        assertEquals(Boolean.FALSE, fromPlain.getRetryable());
+        assertNull(unclassified.getRetryable());
+        assertEquals(0, unclassified.getHttpStatusCode());
+    }
+
+    @Test
+    public void should_leave_retryable_and_severity_undecided_for_explicit_http_code() {
+
+        // Arrange
+        BusinessException explicit = BusinessException.builder("missing").withHttpCode(404).build();
+
+        // Act
+        ExceptionClassification classification = classifier.classify(explicit);
+        ExceptionModel model = new ExceptionModel.Builder("foo", explicit).build();
+
+        // Assert
+        assertEquals(404, classification.getHttpStatusCode());
+        assertNull(classification.getRetryable());
+        assertNull(classification.getSeverity());
+        assertEquals(404, model.getHttpStatusCode());
+        assertNull(model.getRetryable());
+        assertNull(model.getSeverity());
+        assertFalse(model.toString().contains("retryable"));
+    }
+
+    @Test
+    public void should_only_apply_decided_properties() {
+
+        ExceptionModel model = new ExceptionModel.Builder("foo", new IllegalStateException("bad"))
+                .withRetryable(true)
+                .withSeverity(Severity.ERROR)
+                .withClassification(ExceptionClassification.of(409, null, null))
+                .build();
+
+        assertEquals(409, model.getHttpStatusCode());
+        assertEquals(Boolean.TRUE, model.getRetryable());
+        assertEquals("ERROR", model.getSeverity());
+    }
+
+    @Test
+    public void should_use_replaced_default_registry() {
+
+        // Arrange
+        ExceptionClassifier replacement = new ExceptionClassifier()
+                .register(FooBusinessCode.FOO_02, ExceptionClassification.of(409, false, Severity.INFO));
+
+        try {
+            // Act
+            ExceptionClassifier.setDefault(replacement);
+            BusinessException exception = BusinessException.builder("conflict").withBusinessCode(FooBusinessCode.FOO_02).build();
+            ExceptionModel model = new ExceptionModel.Builder("foo", new IOException("down")).build();
+
+            // Assert
+            assertSame(replacement, ExceptionClassifier.getDefault());
+            assertEquals(Integer.valueOf(409), exception.getHttpCode());
+            assertEquals(0, model.getHttpStatusCode());
+        }
+        finally {
+            ExceptionClassifier.setDefault(classifier);
+        }
+
+        ExceptionClassifier.setDefault(null);
+        assertNotSame(classifier, ExceptionClassifier.getDefault());
+        assertNull(ExceptionClassifier.getDefault().classify(IOException.class));
+        ExceptionClassifier.setDefault(classifier);
+    }
+}
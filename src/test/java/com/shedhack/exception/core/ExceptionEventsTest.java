@@ -0,0 +1,131 @@
+package com.shedhack.exception.core;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads the JFR events back from a local recording.
+ */
+public class ExceptionEventsTest {
+
+    @Test
+    public void should_record_events() throws Exception {
+
+        // Arrange
+        File file = File.createTempFile("exceptions", ".jfr");
+        file.deleteOnExit();
+        Recording recording = new Recording();
+        recording.enable("com.shedhack.exception.BusinessException");
+        recording.enable("com.shedhack.exception.ExceptionModel");
+        recording.enable("com.shedhack.exception.ExceptionModelSerialization");
+        recording.start();
+
+        // Act
+        BusinessException exception = BusinessException.builder("failed", new IllegalStateException("cause"))
+                .withBusinessCode(FooBusinessCode.FOO_01)
+                .withTraceId("trace-1")
+                .build();
+
+        ExceptionModel model = new ExceptionModel.Builder("foo", exception).withTraceId("trace-1").withPostBody("{\"name\":\"José\"}").build();
+        String json = model.toString();
+
+        recording.stop();
+        recording.dump(file.toPath());
+        recording.close();
+
+        // Assert
+        RecordedEvent created = single(file, "com.shedhack.exception.BusinessException", exception.getExceptionId());
+        assertEquals("FOO_01", created.getString("businessCodes"));
+        assertEquals("trace-1", created.getString("traceId"));
+        assertEquals(2, created.getInt("chainDepth"));
+
+        RecordedEvent built = single(file, "com.shedhack.exception.ExceptionModel", exception.getExceptionId());
+        assertEquals(BusinessException.class.getName(), built.getString("exceptionClass"));
+        assertEquals(2, built.getInt("chainDepth"));
+        assertEquals(16, built.getLong("requestBodySize"));
+
+        RecordedEvent serialized = single(file, "com.shedhack.exception.ExceptionModelSerialization", exception.getExceptionId());
+        assertEquals(json.getBytes("UTF-8").length, serialized.getLong("payloadSize"));
+        assertNotNull(serialized.getDuration());
+    }
+
+    @Test
+    public void should_not_fail_when_not_recording() {
+        BusinessException exception = BusinessException.builder("failed").build();
+        assertNotNull(new ExceptionModel.Builder("foo", exception).build().toString());
+    }
+
+    @Test
+    public void should_not_load_event_classes_until_recorder_initialized() throws Exception {
+
+        // Arrange
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-verbose:class", "-cp", classPath, Probe.class.getName());
+        builder.redirectErrorStream(true);
+
+        // Act
+        Process process = builder.start();
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        // Assert
+        assertEquals(0, process.waitFor());
+        assertTrue(lines.contains(Probe.DONE));
+
+        for(String line : lines) {
+            assertFalse("loaded without a recording: " + line, line.contains("com.shedhack.exception.core.BusinessExceptionEvent"));
+            assertFalse("loaded without a recording: " + line, line.contains("com.shedhack.exception.core.ExceptionModelEvent"));
+            assertFalse("loaded without a recording: " + line, line.contains("com.shedhack.exception.core.ExceptionModelSerializationEvent"));
+        }
+    }
+
+    private static RecordedEvent single(File file, String name, String exceptionId) throws Exception {
+
+        List<RecordedEvent> matches = new ArrayList<RecordedEvent>();
+
+        for(RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if(event.getEventType().getName().equals(name) && exceptionId.equals(event.getString("exceptionId"))) {
+                matches.add(event);
+            }
+        }
+
+        assertEquals(1, matches.size());
+        return matches.get(0);
+    }
+
+    /**
+     * Builds and serializes a model in its own JVM, without a recording.
+     */
+    public static class Probe {
+
+        static final String DONE = "serialized first model";
+
+        public static void main(String[] args) {
+
+            BusinessException exception = BusinessException.builder("failed").withBusinessCode(FooBusinessCode.FOO_01).build();
+            new ExceptionModel.Builder("probe", exception).build().toString();
+            System.out.println(DONE);
+        }
+    }
+}
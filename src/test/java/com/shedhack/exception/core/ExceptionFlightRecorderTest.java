@@ -0,0 +1,151 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the off-heap flight recorder.
+ */
+public class ExceptionFlightRecorderTest {
+
+    @Test
+    public void should_record_the_most_recent_models() {
+
+        // Arrange
+        ExceptionFlightRecorder recorder = ExceptionFlightRecorder.offHeap(4, 256);
+
+        // Act
+        for(int i = 0; i < 10; i++) {
+            recorder.record(buildModel("failure " + i));
+        }
+
+        // Assert
+        List<FlightRecord> records = recorder.last(3);
+        assertEquals(3, records.size());
+        assertEquals("failure 7", records.get(0).getMessage());
+        assertEquals("failure 9", records.get(2).getMessage());
+        assertEquals(9, records.get(2).getSequence());
+        assertEquals(4, recorder.last(100).size());
+
+        FlightRecord record = records.get(2);
+        assertEquals("foo", record.getApplicationName());
+        assertEquals(404, record.getHttpStatusCode());
+        assertEquals("FOO_01", record.getBusinessCodes());
+        assertEquals("/api/v1/users", record.getPath());
+        assertNull(record.getTraceId());
+        assertNotNull(record.getDateTime());
+    }
+
+    @Test
+    public void should_truncate_strings_to_fit_slot() {
+
+        ExceptionFlightRecorder recorder = ExceptionFlightRecorder.offHeap(2, 128);
+        StringBuilder message = new StringBuilder();
+        for(int i = 0; i < 1000; i++) {
+            message.append("é");
+        }
+
+        recorder.record(buildModel(message.toString()));
+
+        FlightRecord record = recorder.last(1).get(0);
+        assertTrue(record.getMessage().length() < 64);
+        assertTrue(record.getMessage().startsWith("éé"));
+        assertEquals("foo", record.getApplicationName());
+    }
+
+    @Test
+    public void should_keep_records_in_mapped_file() throws Exception {
+
+        // Arrange
+        File file = File.createTempFile("exceptions", ".rec");
+        file.deleteOnExit();
+        ExceptionFlightRecorder recorder = ExceptionFlightRecorder.mapped(file, 8, 256);
+
+        // Act
+        recorder.record(buildModel("first"));
+        recorder.record(buildModel("second"));
+        recorder.flush();
+
+        // Assert
+        List<FlightRecord> records = ExceptionFlightRecorder.read(file);
+        assertEquals(2, records.size());
+        assertEquals("second", records.get(1).getMessage());
+
+        ExceptionFlightRecorder reopened = ExceptionFlightRecorder.mapped(file, 8, 256);
+        reopened.record(buildModel("third"));
+        assertEquals(3, reopened.last(10).size());
+        assertEquals(2, reopened.last(10).get(2).getSequence());
+    }
+
+    @Test
+    public void should_reset_mapped_file_with_other_geometry() throws Exception {
+
+        // Arrange
+        File file = File.createTempFile("exceptions", ".rec");
+        file.deleteOnExit();
+        ExceptionFlightRecorder recorder = ExceptionFlightRecorder.mapped(file, 8, 256);
+        recorder.record(buildModel("first"));
+        recorder.flush();
+
+        // Act, same file size but different slots
+        ExceptionFlightRecorder reset = ExceptionFlightRecorder.mapped(file, 4, 512);
+
+        // Assert
+        assertTrue(reset.last(10).isEmpty());
+        assertTrue(ExceptionFlightRecorder.read(file).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_negative_count() {
+        ExceptionFlightRecorder.offHeap(8, 256).last(-1);
+    }
+
+    @Test
+    public void should_record_from_many_threads_through_listener() throws Exception {
+
+        // Arrange
+        final ExceptionFlightRecorder recorder = ExceptionFlightRecorder.offHeap(64, 256);
+        ExceptionModelListeners.add(recorder);
+        final CountDownLatch latch = new CountDownLatch(4);
+
+        try {
+            // Act
+            for(int t = 0; t < 4; t++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for(int i = 0; i < 1000; i++) {
+                            buildModel("concurrent");
+                        }
+                        latch.countDown();
+                    }
+                }).start();
+            }
+
+            latch.await();
+        }
+        finally {
+            ExceptionModelListeners.remove(recorder);
+        }
+
+        // Assert
+        List<FlightRecord> records = recorder.last(64);
+        assertFalse(records.isEmpty());
+        assertTrue(records.size() <= 64);
+        for(FlightRecord record : records) {
+            assertEquals("concurrent", record.getMessage());
+        }
+    }
+
+    private static ExceptionModel buildModel(String message) {
+        return new ExceptionModel.Builder("foo", BusinessException.builder(message).withBusinessCode(FooBusinessCode.FOO_01).build())
+                .withHttpCode(404, "Not Found")
+                .withPath("/api/v1/users")
+                .build();
+    }
+}
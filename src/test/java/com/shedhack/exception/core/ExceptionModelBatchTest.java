@@ -0,0 +1,187 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the columnar batch writer and reader.
+ */
+public class ExceptionModelBatchTest {
+
+    private static final int ROWS = 1000;
+
+    @Test
+    public void should_read_back_all_columns() throws Exception {
+
+        // Arrange
+        List<ExceptionModel> models = buildModels();
+        File file = tempFile();
+
+        // Act
+        new ExceptionModelBatchWriter().addAll(models).writeTo(file);
+        ExceptionModelBatchReader reader = ExceptionModelBatchReader.open(file);
+        List<ExceptionModel> read = reader.readAll();
+
+        // Assert
+        assertEquals(ROWS, reader.getRowCount());
+        assertEquals(ROWS, read.size());
+
+        for(int i = 0; i < ROWS; i++) {
+            assertEquals(models.get(i), read.get(i));
+            assertEquals(models.get(i).getTraceId(), read.get(i).getTraceId());
+        }
+
+        long json = 0;
+
+        for(ExceptionModel model : models) {
+            json += model.toString().getBytes("UTF-8").length + 1;
+        }
+
+        assertTrue("Batch of " + ROWS + " models: " + file.length() + " bytes, as JSON lines: " + json + " bytes", file.length() * 5 < json);
+    }
+
+    @Test
+    public void should_only_decode_projected_columns() throws Exception {
+
+        // Arrange
+        List<ExceptionModel> models = buildModels();
+        File file = tempFile();
+        new ExceptionModelBatchWriter().addAll(models).writeTo(file);
+
+        // Act
+        List<ExceptionModel> read = ExceptionModelBatchReader.open(file)
+                .read(ExceptionModelColumn.BUSINESS_CODES, ExceptionModelColumn.DATE_TIME);
+
+        // Assert
+        for(int i = 0; i < ROWS; i++) {
+            assertEquals(models.get(i).getBusinessCodes(), read.get(i).getBusinessCodes());
+            assertEquals(models.get(i).getDateTime(), read.get(i).getDateTime());
+            assertNull(read.get(i).getExceptionId());
+            assertNull(read.get(i).getApplicationName());
+            assertTrue(read.get(i).getExceptionChain().isEmpty());
+        }
+    }
+
+    @Test
+    public void should_keep_nulls() throws Exception {
+
+        ExceptionModel empty = new ExceptionModel();
+        empty.setParams(null);
+        empty.setBusinessCodes(null);
+        empty.setExceptionChain(null);
+
+        File file = tempFile();
+        new ExceptionModelBatchWriter().add(empty).writeTo(file);
+
+        ExceptionModel read = ExceptionModelBatchReader.open(file).readAll().get(0);
+
+        assertEquals(empty, read);
+        assertNull(read.getRetryable());
+        assertNull(read.getDateTime());
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_other_files() throws Exception {
+
+        File file = tempFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("{\"exceptionId\":\"1\"}".getBytes("UTF-8"));
+        out.close();
+
+        ExceptionModelBatchReader.open(file);
+    }
+
+    @Test
+    public void should_reject_truncated_files() throws Exception {
+
+        // Arrange
+        File file = tempFile();
+        new ExceptionModelBatchWriter().addAll(buildModels().subList(0, 3)).writeTo(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int rejected = 0;
+
+        // Act
+        for(int length = 16; length < bytes.length; length++) {
+
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(bytes, 0, length);
+            out.close();
+
+            try {
+                ExceptionModelBatchReader.open(file);
+            }
+            catch (IOException e) {
+                rejected++;
+            }
+        }
+
+        // Assert
+        assertEquals(bytes.length - 16, rejected);
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_corrupt_directory() throws Exception {
+
+        // Arrange
+        File file = tempFile();
+        new ExceptionModelBatchWriter().addAll(buildModels().subList(0, 3)).writeTo(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            // column count
+            raf.seek(12);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+        finally {
+            raf.close();
+        }
+
+        // Act
+        ExceptionModelBatchReader.open(file);
+    }
+
+    // ----------------
+    // Helpers
+    // ----------------
+
+    private static List<ExceptionModel> buildModels() {
+
+        List<ExceptionModel> models = new ArrayList<ExceptionModel>();
+        long start = System.currentTimeMillis();
+
+        for(int i = 0; i < ROWS; i++) {
+
+            BusinessException exception = BusinessException.builder("Order " + i + " failed", new IllegalStateException("Downstream timeout"))
+                    .withBusinessCode(FooBusinessCode.values()[i % 4])
+                    .withParam("order", "order-" + i)
+                    .withTraceId("trace-" + i)
+                    .build();
+
+            models.add(new ExceptionModel.Builder("orders", exception)
+                    .withPath(i % 2 == 0 ? "/api/v1/orders" : "/api/v1/payments")
+                    .withHttpCode(500, "Internal Server Error")
+                    .withContext("region", i % 3 == 0 ? "eu" : "us")
+                    .withRetryable(i % 5 == 0)
+                    .withDateTime(new Date(start + i * 37L - (i % 7) * 1000L))
+                    .build());
+        }
+
+        return models;
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("exceptions", ".batch");
+        file.deleteOnExit();
+        return file;
+    }
+}
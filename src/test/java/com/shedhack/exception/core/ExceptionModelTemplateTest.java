@@ -0,0 +1,121 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the pre-rendered templates match the full serializer.
+ */
+public class ExceptionModelTemplateTest {
+
+    @Test
+    public void should_render_the_same_json_as_the_model() throws Exception {
+
+        // Arrange
+        ExceptionModel model = new ExceptionModel.Builder("foo", FlyweightBusinessExceptions.of(FooBusinessCode.FOO_01))
+                .withHttpCode(404, "Not Found")
+                .withTraceId("trace-1234")
+                .withSpanId("span<&>\" é😀")
+                .withPath("/api/v1/users/1?a=b")
+                .build();
+
+        ExceptionModelTemplate template = ExceptionModelTemplate.of("foo", FooBusinessCode.FOO_01, 404, "Not Found");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        template.writeTo(out, model.getExceptionId(), model.getDateTime(), model.getTraceId(), model.getSpanId(), model.getPath());
+
+        // Assert
+        assertEquals(model.toString(), new String(out.toByteArray(), "UTF-8"));
+    }
+
+    @Test
+    public void should_omit_null_dynamic_fields() throws Exception {
+
+        // Arrange
+        Date now = new Date();
+        ExceptionModel model = new ExceptionModel.Builder("foo", FlyweightBusinessExceptions.of(FooBusinessCode.FOO_02))
+                .withHttpCode(400, null)
+                .withDateTime(now)
+                .build();
+
+        // Act
+        byte[] json = ExceptionModelTemplate.of("foo", FooBusinessCode.FOO_02, 400, null)
+                .render(model.getExceptionId(), now, null, null, null);
+
+        // Assert
+        assertEquals(model.toString(), new String(json, "UTF-8"));
+    }
+
+    @Test
+    public void should_cache_templates() {
+        assertSame(ExceptionModelTemplate.of("foo", FooBusinessCode.FOO_03, 500, "Error"),
+                ExceptionModelTemplate.of("foo", FooBusinessCode.FOO_03, 500, "Error"));
+    }
+
+    @Test
+    public void should_render_templates_without_the_context() throws Exception {
+
+        // Arrange
+        final AtomicInteger built = new AtomicInteger();
+        ExceptionModelListener listener = new ExceptionModelListener() {
+            @Override
+            public void onBuild(ExceptionModel model) {
+                built.incrementAndGet();
+            }
+        };
+
+        TraceContext alice = TraceContext.of("trace", "span").withSessionId("SESSION-OF-ALICE").withLocale(Locale.FRENCH);
+        ExceptionModelListeners.add(listener);
+
+        // Act
+        ExceptionModelTemplate french;
+
+        try {
+            french = TraceContext.call(alice, new Callable<ExceptionModelTemplate>() {
+                @Override
+                public ExceptionModelTemplate call() {
+                    return ExceptionModelTemplate.of("context", FooBusinessCode.FOO_01, 404, "Not Found");
+                }
+            });
+        }
+        finally {
+            ExceptionModelListeners.remove(listener);
+        }
+
+        String json = new String(french.render("id", null, null, null, null), "UTF-8");
+        String plain = new String(ExceptionModelTemplate.of("context", FooBusinessCode.FOO_01, 404, "Not Found").render("id", null, null, null, null), "UTF-8");
+
+        // Assert
+        assertEquals(0, built.get());
+        assertFalse(json.contains("SESSION-OF-ALICE"));
+        assertTrue(json.contains("Utilisateur introuvable."));
+        assertSame(french, ExceptionModelTemplate.of("context", FooBusinessCode.FOO_01, 404, "Not Found", Locale.FRENCH));
+        assertFalse(plain.contains("Utilisateur introuvable."));
+        assertTrue(plain.contains(FooBusinessCode.FOO_01.getDescription()));
+    }
+
+    @Test
+    public void should_share_templates_between_locales_with_the_same_description() {
+
+        // Arrange
+        ExceptionModelTemplate plain = ExceptionModelTemplate.of("locales", FooBusinessCode.FOO_01, 404, "Not Found", null);
+
+        // Act
+        ExceptionModelTemplate german = ExceptionModelTemplate.of("locales", FooBusinessCode.FOO_01, 404, "Not Found", Locale.GERMAN);
+        ExceptionModelTemplate madeUp = ExceptionModelTemplate.of("locales", FooBusinessCode.FOO_01, 404, "Not Found", new Locale("xx", "YY"));
+        ExceptionModelTemplate french = ExceptionModelTemplate.of("locales", FooBusinessCode.FOO_01, 404, "Not Found", Locale.FRENCH);
+
+        // Assert
+        assertSame(plain, german);
+        assertSame(plain, madeUp);
+        assertNotSame(plain, french);
+    }
+}
@@ -0,0 +1,231 @@
+package com.shedhack.exception.core;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Soak harness which runs a synthetic exception storm (business exception, model, JSON) across a number of threads
+ * and reports throughput, allocation rate and GC time.
+ *
+ * Run from the command line with: <code>ExceptionStormHarness [threads] [seconds]</code>.
+ * </p>
+ *
+ * @author imamchishty
+ */
+public class ExceptionStormHarness {
+
+    // ----------------
+    // Class properties
+    // ----------------
+
+    private final int threads;
+
+    private final long durationMillis;
+
+    public ExceptionStormHarness(int threads, long durationMillis) {
+        this.threads = threads;
+        this.durationMillis = durationMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 30;
+
+        System.out.println(new ExceptionStormHarness(threads, TimeUnit.SECONDS.toMillis(seconds)).run());
+    }
+
+    /**
+     * Runs the storm and blocks until all threads have finished.
+     */
+    public Report run() throws InterruptedException {
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong operations = new AtomicLong();
+        final AtomicLong allocated = new AtomicLong();
+        final AtomicLong payload = new AtomicLong();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        List<Thread> workers = new ArrayList<Thread>();
+
+        for(int i = 0; i < threads; i++) {
+
+            final int worker = i;
+
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+
+                    long before = allocatedBytes();
+                    long count = 0;
+                    long bytes = 0;
+
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+
+                    while (System.nanoTime() < deadline) {
+                        bytes += storm(worker, count).length();
+                        count++;
+                    }
+
+                    operations.addAndGet(count);
+                    payload.addAndGet(bytes);
+                    allocated.addAndGet(allocatedBytes() - before);
+                }
+            }, "exception-storm-" + i);
+
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long began = System.nanoTime();
+        start.countDown();
+
+        for(Thread thread : workers) {
+            thread.join();
+        }
+
+        long elapsed = System.nanoTime() - began;
+
+        return new Report(threads, elapsed, operations.get(), allocatedBytes() < 0 ? -1 : allocated.get(), payload.get(),
+                gcCount() - gcCount, gcTime() - gcTime);
+    }
+
+    /**
+     * One iteration of the storm: a business exception with a cause, its model and its JSON.
+     */
+    static String storm(int worker, long iteration) {
+
+        BusinessException exception = BusinessException.builder("Storm failure " + iteration,
+                new IllegalStateException("Downstream failure"))
+                .withBusinessCode(FooBusinessCode.values()[(int) (iteration & 3)])
+                .withParam("worker", worker)
+                .withParam("iteration", iteration)
+                .build();
+
+        return new ExceptionModel.Builder("storm", exception)
+                .withHttpCode(500, "Internal Server Error")
+                .withPath("/api/v1/storm")
+                .build()
+                .toString();
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, -1 if not supported by the JVM.
+     */
+    static long allocatedBytes() {
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+
+            if(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+
+    private static long gcCount() {
+
+        long count = 0;
+
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+
+        return count;
+    }
+
+    private static long gcTime() {
+
+        long time = 0;
+
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+
+        return time;
+    }
+
+    /**
+     * Result of a run.
+     */
+    public static class Report {
+
+        private final int threads;
+
+        private final long elapsedNanos, operations, allocatedBytes, payloadChars, gcCount, gcMillis;
+
+        Report(int threads, long elapsedNanos, long operations, long allocatedBytes, long payloadChars, long gcCount, long gcMillis) {
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.operations = operations;
+            this.allocatedBytes = allocatedBytes;
+            this.payloadChars = payloadChars;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public double getThroughput() {
+            return operations / seconds();
+        }
+
+        /**
+         * @return bytes allocated per second by the storm threads, -1 if not supported by the JVM.
+         */
+        public double getAllocationRate() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / seconds();
+        }
+
+        /**
+         * @return bytes allocated per operation, -1 if not supported by the JVM.
+         */
+        public long getBytesPerOperation() {
+            return allocatedBytes < 0 || operations == 0 ? -1 : allocatedBytes / operations;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcMillis() {
+            return gcMillis;
+        }
+
+        private double seconds() {
+            return Math.max(1, elapsedNanos) / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("threads=%d, elapsed=%dms, operations=%d, throughput=%.0f ops/s, allocation rate=%.1f MB/s, "
+                    + "allocated per operation=%d bytes, average payload=%d chars, gc count=%d, gc time=%dms (%.1f%%)",
+                    threads, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), operations, getThroughput(),
+                    getAllocationRate() / (1024 * 1024), getBytesPerOperation(), operations == 0 ? 0 : payloadChars / operations,
+                    gcCount, gcMillis, 100.0 * gcMillis / Math.max(1, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+        }
+    }
+}
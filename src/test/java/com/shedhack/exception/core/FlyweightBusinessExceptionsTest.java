@@ -0,0 +1,57 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the flyweight business exceptions.
+ */
+public class FlyweightBusinessExceptionsTest {
+
+    @Test
+    public void should_return_the_same_instance_per_code() {
+
+        // Arrange & Act
+        BusinessException first = FlyweightBusinessExceptions.of(FooBusinessCode.FOO_01);
+        BusinessException second = FlyweightBusinessExceptions.of(FooBusinessCode.FOO_01);
+
+        // Assert
+        assertSame(first, second);
+        assertNotSame(first, FlyweightBusinessExceptions.of(FooBusinessCode.FOO_02));
+        assertTrue(first.isFrozen());
+        assertEquals(FooBusinessCode.FOO_01.getDescription(), first.getMessage());
+        assertEquals(FooBusinessCode.FOO_01, first.getBusinessCodes().get(0));
+        assertEquals(0, first.getStackTrace().length);
+        assertNull(first.getExceptionId());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void should_reject_mutation() {
+        FlyweightBusinessExceptions.of(FooBusinessCode.FOO_01).setExceptionId("1234");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void should_reject_mutation_of_codes() {
+        FlyweightBusinessExceptions.of(FooBusinessCode.FOO_01).getBusinessCodes().add(FooBusinessCode.FOO_02);
+    }
+
+    @Test
+    public void should_generate_fresh_id_per_model() {
+
+        // Arrange
+        BusinessException exception = FlyweightBusinessExceptions.of(FooBusinessCode.FOO_03);
+
+        // Act
+        ExceptionModel first = new ExceptionModel.Builder("foo", exception).build();
+        ExceptionModel second = new ExceptionModel.Builder("foo", exception).build();
+
+        // Assert
+        assertNotNull(first.getExceptionId());
+        assertNotNull(first.getDateTime());
+        assertNotEquals(first.getExceptionId(), second.getExceptionId());
+        assertEquals(first.getExceptionId(), first.getExceptionChain().get(0).getCorrelationId());
+        assertEquals(FooBusinessCode.FOO_03.getDescription(), first.getBusinessCodes().get(FooBusinessCode.FOO_03.getCode()));
+        assertNull(exception.getExceptionId());
+    }
+}
@@ -0,0 +1,132 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link HeavyHitterTracker}.
+ */
+public class HeavyHitterTrackerTest {
+
+    private static final long NOW = 1500000000000L;
+
+    private final HeavyHitterTracker tracker = HeavyHitterTracker.builder()
+            .withWindow(5, TimeUnit.MINUTES)
+            .withBuckets(5)
+            .build();
+
+    @Test
+    public void should_find_heavy_hitters_among_unbounded_keys() {
+
+        // Arrange
+        for(int i = 0; i < 100000; i++) {
+            tracker.record(HeavyHitterTracker.Dimension.PATH, "/api/v1/orders/" + i, NOW + i);
+
+            if(i % 20 == 0) {
+                tracker.record(HeavyHitterTracker.Dimension.PATH, "/api/v1/hot", NOW + i);
+            }
+
+            if(i % 50 == 0) {
+                tracker.record(HeavyHitterTracker.Dimension.PATH, "/api/v1/warm", NOW + i);
+            }
+        }
+
+        // Act
+        List<HeavyHitterTracker.HeavyHitter> top = tracker.top(HeavyHitterTracker.Dimension.PATH, 2, NOW + 100000);
+
+        // Assert
+        assertEquals(2, top.size());
+        assertEquals("/api/v1/hot", top.get(0).getKey());
+        assertEquals("/api/v1/warm", top.get(1).getKey());
+
+        HeavyHitterTracker.HeavyHitter hot = top.get(0);
+        assertEquals(107000, hot.getTotal());
+        assertTrue(hot.getEstimate() >= 5000);
+        assertTrue(hot.getLowerBound() <= 5000);
+        assertTrue(hot.getEstimate() - hot.getError() <= 5000);
+        assertTrue(hot.getConfidence() > 0.9);
+    }
+
+    @Test
+    public void should_slide_window() {
+
+        // Arrange
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        tracker.record(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, "old", NOW);
+        tracker.record(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, "old", NOW);
+        tracker.record(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, "new", NOW + 3 * minute);
+
+        // Act & Assert
+        List<HeavyHitterTracker.HeavyHitter> top = tracker.top(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, 10, NOW + 4 * minute);
+        assertEquals(2, top.size());
+        assertEquals("old", top.get(0).getKey());
+        assertEquals(2, top.get(0).getEstimate());
+
+        top = tracker.top(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, 10, NOW + 6 * minute);
+        assertEquals(1, top.size());
+        assertEquals("new", top.get(0).getKey());
+
+        // replaces the expired bucket, events older than the window are ignored
+        tracker.record(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, "newer", NOW + 5 * minute);
+        tracker.record(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, "ignored", NOW);
+        top = tracker.top(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, 10, NOW + 6 * minute);
+        assertEquals(2, top.size());
+        assertEquals(2, top.get(0).getTotal());
+    }
+
+    @Test
+    public void should_track_models_as_they_are_built() {
+
+        HeavyHitterTracker live = HeavyHitterTracker.builder().build();
+        ExceptionModelListeners.add(live);
+
+        try {
+            for(int i = 0; i < 10; i++) {
+                new ExceptionModel.Builder("foo", BusinessException.builder("failed")
+                        .withBusinessCode(i < 7 ? FooBusinessCode.FOO_01 : FooBusinessCode.FOO_02).build())
+                        .withPath("/api/v1/users")
+                        .build();
+            }
+        }
+        finally {
+            ExceptionModelListeners.remove(live);
+        }
+
+        List<HeavyHitterTracker.HeavyHitter> codes = live.top(HeavyHitterTracker.Dimension.BUSINESS_CODE, 1);
+        assertEquals(FooBusinessCode.FOO_01.getCode(), codes.get(0).getKey());
+        assertEquals(7, codes.get(0).getEstimate());
+        assertEquals(BusinessException.class.getName(), live.top(HeavyHitterTracker.Dimension.EXCEPTION_CLASS, 1).get(0).getKey());
+        assertEquals(10, live.top(HeavyHitterTracker.Dimension.PATH, 1).get(0).getEstimate());
+    }
+
+    @Test
+    public void should_count_concurrent_updates() throws Exception {
+
+        Thread[] threads = new Thread[4];
+
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < 10000; i++) {
+                        tracker.record(HeavyHitterTracker.Dimension.BUSINESS_CODE, i % 4 == 0 ? "FOO_01" : "FOO_" + (i % 100), NOW);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        HeavyHitterTracker.HeavyHitter top = tracker.top(HeavyHitterTracker.Dimension.BUSINESS_CODE, 1, NOW).get(0);
+        assertEquals("FOO_01", top.getKey());
+        assertEquals(40000, top.getTotal());
+        assertTrue(top.getEstimate() >= 10000);
+    }
+}
@@ -0,0 +1,196 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the redaction and truncation of payloads.
+ */
+public class PayloadPolicyTest {
+
+    private final PayloadPolicy policy = PayloadPolicy.builder()
+            .withSensitiveKeys("password", "Authorization")
+            .withRequestBodyBudget(128)
+            .withParamBudget(12)
+            .build();
+
+    @Test
+    public void should_redact_json_body() {
+
+        // Arrange
+        String body = "{\"user\":\"imam\", \"PassWord\" : \"secret\",\"authorization\":{\"token\":\"abc\"},\"age\":42}";
+
+        // Act
+        String result = policy.applyToBody(body);
+
+        // Assert
+        assertEquals("{\"user\":\"imam\", \"PassWord\" : \"******\",\"authorization\":\"******\",\"age\":42}", result);
+    }
+
+    @Test
+    public void should_redact_form_body() {
+        assertEquals("user=imam&password=******&x=1", policy.applyToBody("user=imam&password=secret&x=1"));
+    }
+
+    @Test
+    public void should_truncate_body_to_budget() {
+
+        // Arrange
+        StringBuilder body = new StringBuilder("{\"items\":[");
+        for(int i = 0; i < 100000; i++) {
+            body.append("\"item-").append(i).append("\",");
+        }
+        body.append("\"end\"]}");
+
+        // Act
+        String result = policy.applyToBody(body.toString());
+
+        // Assert
+        assertTrue(result.endsWith("...[truncated]"));
+        assertEquals(128, result.length() - "...[truncated]".length());
+    }
+
+    @Test
+    public void should_apply_to_model_without_changing_exception_params() {
+
+        // Arrange
+        BusinessException exception = BusinessException.builder("failed")
+                .withParam("password", "secret")
+                .withParam("name", "a very long name indeed")
+                .build();
+
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("authorization", "Bearer abc");
+
+        // Act
+        ExceptionModel model = new ExceptionModel.Builder("foo", exception)
+                .withContexts(context)
+                .withPostBody("{\"password\":\"secret\"}")
+                .withPayloadPolicy(policy)
+                .build();
+
+        // Assert
+        assertEquals("******", model.getParams().get("password"));
+        assertEquals("a very l...[truncated]", model.getParams().get("name"));
+        assertEquals("******", model.getContext().get("authorization"));
+        assertEquals("{\"password\":\"******\"}", model.getRequestBody());
+        assertEquals("secret", exception.getParams().get("password"));
+        assertEquals("Bearer abc", context.get("authorization"));
+    }
+
+    @Test
+    public void should_leave_payloads_untouched_by_default() {
+
+        ExceptionModel model = new ExceptionModel.Builder("foo", new IllegalStateException("x"))
+                .withParam("password", "secret")
+                .withPostBody("password=secret")
+                .build();
+
+        assertEquals("secret", model.getParams().get("password"));
+        assertEquals("password=secret", model.getRequestBody());
+    }
+
+    @Test
+    public void should_redact_escaped_keys() {
+
+        assertEquals("{\"pass\\u0077ord\":\"******\",\"x\\\"y\":1}", policy.applyToBody("{\"pass\\u0077ord\":\"secret\",\"x\\\"y\":1}"));
+        assertEquals("{\"Author\\u0069zation\":\"******\"}", policy.applyToBody("{\"Author\\u0069zation\":\"Bearer abc\"}"));
+        assertEquals("pass%77ord=******&x=1", policy.applyToBody("pass%77ord=secret&x=1"));
+    }
+
+    @Test
+    public void should_share_budget_between_all_values() {
+
+        // Arrange
+        PayloadPolicy small = PayloadPolicy.builder().withParamBudget(16).withContextBudget(16).build();
+        List<Object> items = new ArrayList<Object>();
+
+        for(int i = 0; i < 100000; i++) {
+            items.add("item-" + i);
+        }
+
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("chars", new char[200000]);
+
+        // Act
+        ExceptionModel model = new ExceptionModel.Builder("foo", new IllegalStateException("x"))
+                .withParam("items", items)
+                .withParam("numbers", new int[100000])
+                .withParam("chars", new char[100000])
+                .withContexts(context)
+                .withPayloadPolicy(small)
+                .build();
+
+        // Assert
+        String params = model.getParams().toString();
+        String contexts = model.getContext().toString();
+        assertTrue(params, params.length() < 128);
+        assertTrue(contexts, contexts.length() < 64);
+        assertEquals("...[truncated]", ((String) model.getContext().get("chars")).substring(11));
+    }
+
+    @Test
+    public void should_keep_small_values_as_they_are() {
+
+        // Arrange
+        PayloadPolicy budget = PayloadPolicy.builder().withParamBudget(64).build();
+        List<Integer> numbers = Arrays.asList(1, 2, 3);
+
+        // Act
+        ExceptionModel model = new ExceptionModel.Builder("foo", new IllegalStateException("x"))
+                .withParam("count", 42)
+                .withParam("numbers", numbers)
+                .withParam("pojo", new Object() {
+                    @Override
+                    public String toString() {
+                        return "pojo";
+                    }
+                })
+                .withPayloadPolicy(budget)
+                .build();
+
+        // Assert
+        assertEquals(42, model.getParams().get("count"));
+        assertEquals(numbers, model.getParams().get("numbers"));
+        assertEquals("pojo", model.getParams().get("pojo"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_null_mask() {
+        PayloadPolicy.builder().withMask(null);
+    }
+
+    @Test
+    public void should_redact_maps_in_lists_without_budget() {
+
+        // Arrange
+        PayloadPolicy redacting = PayloadPolicy.builder().withSensitiveKeys("password").build();
+        Map<String, Object> user = new HashMap<String, Object>();
+        user.put("password", "hunter2");
+        user.put("name", "bob");
+
+        // Act
+        ExceptionModel model = new ExceptionModel.Builder("foo", new IllegalStateException("x"))
+                .withParam("users", Arrays.asList(user))
+                .withParam("admins", new Object[] {user})
+                .withParam("ids", new int[] {1, 2})
+                .withPayloadPolicy(redacting)
+                .build();
+
+        // Assert
+        Map<?, ?> listed = (Map<?, ?>) ((List<?>) model.getParams().get("users")).get(0);
+        Map<?, ?> arrayed = (Map<?, ?>) ((List<?>) model.getParams().get("admins")).get(0);
+        assertEquals("******", listed.get("password"));
+        assertEquals("bob", listed.get("name"));
+        assertEquals("******", arrayed.get("password"));
+        assertTrue(model.getParams().get("ids") instanceof int[]);
+        assertEquals("hunter2", user.get("password"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the time to the first {@link ExceptionModel} in a fresh JVM and checks that no serializer
+ * (and so no Gson class) is loaded until the first model is serialized.
+ */
+public class StartupBenchmarkTest {
+
+    private static final String SERIALIZING = "serializing first model";
+
+    @Test
+    public void should_not_load_serializer_when_building_first_model() throws Exception {
+
+        // Arrange
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-verbose:class", "-cp", classPath, Probe.class.getName());
+        builder.redirectErrorStream(true);
+
+        // Act
+        Process process = builder.start();
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        // Assert
+        assertEquals(0, process.waitFor());
+        int marker = lines.indexOf(SERIALIZING);
+        assertTrue(marker > 0);
+
+        String timing = null;
+
+        for(String line : lines) {
+            if(line.startsWith("time to first")) {
+                timing = line;
+            }
+        }
+
+        assertNotNull(timing);
+
+        for(String line : lines.subList(0, marker)) {
+            assertFalse(timing + ", loaded early: " + line, line.contains("com.google.gson."));
+            assertFalse(timing + ", loaded early: " + line, line.contains("ExceptionModelSerializers"));
+        }
+    }
+
+    /**
+     * Runs in its own JVM.
+     */
+    public static class Probe {
+
+        public static void main(String[] args) {
+
+            long start = System.nanoTime();
+            ExceptionModel model = new ExceptionModel.Builder("probe", new IllegalStateException("first")).build();
+            long built = System.nanoTime();
+
+            System.out.println(SERIALIZING);
+            String json = model.toString();
+            long serialized = System.nanoTime();
+
+            System.out.println("time to first model: " + (built - start) / 1000 + "us, time to first JSON: "
+                    + (serialized - built) / 1000 + "us (" + json.length() + " chars)");
+        }
+    }
+}
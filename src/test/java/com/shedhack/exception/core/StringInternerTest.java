@@ -0,0 +1,172 @@
+package com.shedhack.exception.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link StringInterner}, including a footprint comparison for 100k models.
+ */
+public class StringInternerTest {
+
+    private static final int MODELS = 100000;
+
+    private static final String[] REASONS = {"insufficient funds", "card expired", "limit exceeded", "fraud suspected", "timeout"};
+
+    private static final String[] RESOURCES = {"payments", "orders", "accounts", "users", "invoices", "refunds", "cards"};
+
+    @After
+    public void reset() {
+        StringInterner.setDefault(null);
+    }
+
+    @Test
+    public void should_share_equal_strings() {
+
+        // Arrange
+        StringInterner interner = StringInterner.create(16);
+        String first = new String("orders");
+        String second = new String("orders");
+
+        // Act & Assert
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+        assertNull(interner.intern(null));
+        assertTrue(interner.isEnabled());
+    }
+
+    @Test
+    public void should_return_strings_as_they_are_when_disabled() {
+
+        String value = new String("orders");
+
+        assertFalse(StringInterner.getDefault().isEnabled());
+        assertSame(value, StringInterner.NONE.intern(value));
+    }
+
+    @Test
+    public void should_stay_bounded_when_full() {
+
+        StringInterner interner = StringInterner.create(2);
+
+        for(int i = 0; i < 1000; i++) {
+            String value = "value-" + i;
+            assertEquals(value, interner.intern(value));
+        }
+    }
+
+    @Test
+    public void should_reduce_footprint_of_100k_models() {
+
+        // Arrange & Act
+        Footprint plain = footprint(buildModels());
+
+        StringInterner.setDefault(StringInterner.create());
+        Footprint interned = footprint(buildModels());
+
+        // Assert
+        assertTrue(plain + " vs " + interned, interned.strings * 100 < plain.strings);
+        assertTrue(plain + " vs " + interned, interned.bytes * 100 < plain.bytes);
+    }
+
+    @Test
+    public void should_not_intern_messages() {
+
+        // Arrange
+        StringInterner.setDefault(StringInterner.create());
+        IllegalStateException cause = new IllegalStateException(new String("Downstream failure"));
+
+        // Act
+        ExceptionModel first = new ExceptionModel.Builder("foo", new IllegalStateException(new String("failed"), cause)).build();
+        ExceptionModel second = new ExceptionModel.Builder("foo", new IllegalStateException(new String("failed"), cause)).build();
+
+        // Assert
+        assertSame(first.getExceptionClass(), second.getExceptionClass());
+        assertEquals(first.getMessage(), second.getMessage());
+        assertNotSame(first.getMessage(), second.getMessage());
+        assertNotSame(first.getExceptionChain().get(0).getMessage(), second.getExceptionChain().get(0).getMessage());
+    }
+
+    // ----------------
+    // Helpers
+    // ----------------
+
+    /**
+     * Models whose strings are created at runtime, as they would be when read from requests or built from messages.
+     */
+    private static List<ExceptionModel> buildModels() {
+
+        List<ExceptionModel> models = new ArrayList<ExceptionModel>(MODELS);
+
+        for(int i = 0; i < MODELS; i++) {
+
+            String reason = REASONS[i % REASONS.length];
+            String resource = RESOURCES[i % RESOURCES.length];
+
+            BusinessException exception = BusinessException.builder("Unable to process " + resource,
+                    new IllegalStateException("Downstream " + resource + " service failed: " + reason))
+                    .withBusinessCode(FooBusinessCode.values()[i % 4])
+                    .build();
+
+            models.add(new ExceptionModel.Builder(new String("payments-service"), exception)
+                    .withPath("/api/v1/" + resource)
+                    .withHttpCode(503, new String("Service Unavailable"))
+                    .build());
+        }
+
+        return models;
+    }
+
+    private static Footprint footprint(List<ExceptionModel> models) {
+
+        Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<String, Boolean>());
+
+        for(ExceptionModel model : models) {
+
+            strings.add(model.getApplicationName());
+            strings.add(model.getExceptionClass());
+            strings.add(model.getMetadata());
+            strings.add(model.getPath());
+            strings.add(model.getHttpStatusDescription());
+
+            for(Map.Entry<String, String> code : model.getBusinessCodes().entrySet()) {
+                strings.add(code.getKey());
+                strings.add(code.getValue());
+            }
+        }
+
+        strings.remove(null);
+
+        long bytes = 0;
+
+        for(String string : strings) {
+            // object header, hash, coder and array reference plus the (latin-1) byte array
+            bytes += 24 + 16 + string.length();
+        }
+
+        return new Footprint(strings.size(), bytes);
+    }
+
+    private static class Footprint {
+
+        private final long strings, bytes;
+
+        Footprint(long strings, long bytes) {
+            this.strings = strings;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return strings + " distinct strings (~" + bytes / 1024 + " KB)";
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.shedhack.exception.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link TraceContext}.
+ */
+public class TraceContextTest {
+
+    private final TraceContext context = TraceContext.of("trace-1", "span-1").withSessionId("session-1").withPath("/api/v1/users");
+
+    @Test
+    public void should_populate_models_from_bound_context() throws Exception {
+
+        // Arrange & Act
+        ExceptionModel model = TraceContext.call(context, new Callable<ExceptionModel>() {
+            @Override
+            public ExceptionModel call() {
+                return new ExceptionModel.Builder("foo", new IllegalStateException("failed")).build();
+            }
+        });
+
+        // Assert
+        assertEquals("trace-1", model.getTraceId());
+        assertEquals("span-1", model.getSpanId());
+        assertEquals("session-1", model.getSessionId());
+        assertEquals("/api/v1/users", model.getPath());
+        assertNull(TraceContext.current());
+    }
+
+    @Test
+    public void should_prefer_business_exception_ids() {
+
+        final AtomicReference<ExceptionModel> model = new AtomicReference<ExceptionModel>();
+
+        TraceContext.run(context, new Runnable() {
+            @Override
+            public void run() {
+
+                BusinessException exception = BusinessException.builder("failed")
+                        .withSpanId("span-2")
+                        .withCorrelationId("correlation-1")
+                        .build();
+
+                assertEquals("trace-1", exception.getTraceId());
+                model.set(new ExceptionModel.Builder("foo", exception).build());
+            }
+        });
+
+        assertEquals("trace-1", model.get().getTraceId());
+        assertEquals("span-2", model.get().getSpanId());
+        assertEquals("correlation-1", model.get().getCorrelationId());
+        assertEquals("session-1", model.get().getSessionId());
+        assertTrue(model.get().toString().contains("\"correlationId\":\"correlation-1\""));
+    }
+
+    @Test
+    public void should_copy_trace_id_from_business_exception_without_context() {
+
+        BusinessException exception = BusinessException.builder("failed").withTraceId("trace-2").build();
+
+        ExceptionModel model = new ExceptionModel.Builder("foo", exception).withPath("/explicit").build();
+
+        assertEquals("trace-2", model.getTraceId());
+        assertEquals("/explicit", model.getPath());
+        assertNull(model.getSessionId());
+    }
+
+    @Test
+    public void should_restore_previous_context_when_scope_closed() throws Exception {
+
+        TraceContext.Scope outer = TraceContext.bind(context);
+
+        try {
+            TraceContext.Scope inner = TraceContext.bind(context.withTraceId("trace-3"));
+            assertEquals("trace-3", TraceContext.current().getTraceId());
+            inner.close();
+
+            assertSame(context, TraceContext.current());
+
+            final AtomicReference<TraceContext> inherited = new AtomicReference<TraceContext>(context);
+            Thread child = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    inherited.set(TraceContext.current());
+                }
+            });
+            child.start();
+            child.join();
+
+            // not inherited, pooled threads would otherwise keep the context of the request that started them
+            assertNull(inherited.get());
+        }
+        finally {
+            outer.close();
+        }
+
+        assertNull(TraceContext.current());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_propagate_task_exceptions() throws Exception {
+
+        TraceContext.call(context, new Callable<Object>() {
+            @Override
+            public Object call() {
+                throw new IllegalArgumentException("failed");
+            }
+        });
+    }
+
+    @Test
+    public void should_prefer_innermost_binding() {
+
+        final AtomicReference<TraceContext> bound = new AtomicReference<TraceContext>();
+        final AtomicReference<TraceContext> cleared = new AtomicReference<TraceContext>(context);
+        final AtomicReference<TraceContext> nested = new AtomicReference<TraceContext>();
+
+        TraceContext.run(context, new Runnable() {
+            @Override
+            public void run() {
+
+                TraceContext.Scope scope = TraceContext.bind(context.withTraceId("trace-4"));
+
+                try {
+                    bound.set(TraceContext.current());
+
+                    TraceContext.run(null, new Runnable() {
+                        @Override
+                        public void run() {
+                            cleared.set(TraceContext.current());
+                        }
+                    });
+
+                    TraceContext.run(context.withTraceId("trace-5"), new Runnable() {
+                        @Override
+                        public void run() {
+                            nested.set(TraceContext.current());
+                        }
+                    });
+
+                    assertEquals("trace-4", TraceContext.current().getTraceId());
+                }
+                finally {
+                    scope.close();
+                }
+
+                assertSame(context, TraceContext.current());
+            }
+        });
+
+        assertEquals("trace-4", bound.get().getTraceId());
+        assertNull(cleared.get());
+        assertEquals("trace-5", nested.get().getTraceId());
+        assertNull(TraceContext.current());
+    }
+}